@@ -3,13 +3,28 @@ package mtba;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class AdminFrame extends JFrame {
 
     private static final long serialVersionUID = 1L; 
     
     private DatabaseManager dbManager; 
+
+    // Imports, exports and schedule runs happen here, off the event thread, each on its own virtual thread
+    private static final ExecutorService WORKERS = Executors.newVirtualThreadPerTaskExecutor();
     
     // Theme Constants (FIXED: Added NEUTRAL_GRAY)
     private static final Color ACCENT_YELLOW = new Color(255, 213, 0); 
@@ -24,14 +39,17 @@ public class AdminFrame extends JFrame {
     private JTextField movieField, genreField, durationField, ratingField;
     
     // Input Fields for Add Theatre
-    private JTextField theatreNameField, theatreLocationField, totalSeatsField;
+    private JTextField theatreNameField, theatreLocationField, totalSeatsField, screensField;
+
+    // Everything that writes to the catalog, switched off while a background catalog job runs
+    private JButton addMovieBtn, addTheatreBtn, importBtn, scheduleBtn, pricingBtn;
     
     // Input Fields for Add Show (Not used, but kept for clarity on the warnings)
     private JTextField dateField, showTimeField; 
 
     public AdminFrame() {
         setTitle("Admin Panel - Movie/Theatre Management");
-        setSize(800, 550);
+        setSize(800, 620);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
         getContentPane().setBackground(BACKGROUND_LIGHT);
@@ -66,6 +84,41 @@ public class AdminFrame extends JFrame {
         // showTimeField = new JTextField(); // Removed, as it is unused
 
         add(mainPanel, BorderLayout.CENTER);
+
+        // --- 3. Bulk Tools ---
+        add(createToolsPanel(), BorderLayout.SOUTH);
+    }
+
+    private JPanel createToolsPanel() {
+        JPanel toolsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 15, 10));
+        toolsPanel.setBackground(BACKGROUND_LIGHT);
+
+        importBtn = new JButton("IMPORT CSV");
+        styleButton(importBtn);
+        importBtn.addActionListener(e -> importCatalog());
+        toolsPanel.add(importBtn);
+
+        JButton exportBtn = new JButton("EXPORT BOOKINGS");
+        styleButton(exportBtn);
+        exportBtn.addActionListener(e -> exportBookings());
+        toolsPanel.add(exportBtn);
+
+        JButton analyticsBtn = new JButton("ANALYTICS");
+        styleButton(analyticsBtn);
+        analyticsBtn.addActionListener(e -> showAnalytics());
+        toolsPanel.add(analyticsBtn);
+
+        scheduleBtn = new JButton("GENERATE SCHEDULE");
+        styleButton(scheduleBtn);
+        scheduleBtn.addActionListener(e -> generateSchedule());
+        toolsPanel.add(scheduleBtn);
+
+        pricingBtn = new JButton("PRICING");
+        styleButton(pricingBtn);
+        pricingBtn.addActionListener(e -> editPricing());
+        toolsPanel.add(pricingBtn);
+
+        return toolsPanel;
     }
     
     private JPanel createMoviePanel() {
@@ -86,7 +139,7 @@ public class AdminFrame extends JFrame {
         
         moviePanel.add(fieldsPanel, BorderLayout.CENTER);
 
-        JButton addMovieBtn = new JButton("ADD MOVIE");
+        addMovieBtn = new JButton("ADD MOVIE");
         styleButton(addMovieBtn);
         addMovieBtn.addActionListener(e -> addMovie());
         
@@ -105,17 +158,18 @@ public class AdminFrame extends JFrame {
             BorderFactory.createLineBorder(NEUTRAL_GRAY), // FIX: NEUTRAL_GRAY is now defined
             "Add New Theatre Details", TitledBorder.LEFT, TitledBorder.TOP, MODERN_FONT_BOLD_16, FOREGROUND_DARK));
 
-        JPanel fieldsPanel = new JPanel(new GridLayout(3, 2, 10, 10));
+        JPanel fieldsPanel = new JPanel(new GridLayout(4, 2, 10, 10));
         fieldsPanel.setBorder(new EmptyBorder(15, 15, 15, 15));
         fieldsPanel.setBackground(Color.WHITE);
 
         theatreNameField = addField(fieldsPanel, "Theatre Name:");
         theatreLocationField = addField(fieldsPanel, "Location:");
         totalSeatsField = addField(fieldsPanel, "Total Seats (e.g., 80):", true); 
+        screensField = addField(fieldsPanel, "Screens (default 1):", true);
 
         theatrePanel.add(fieldsPanel, BorderLayout.CENTER);
 
-        JButton addTheatreBtn = new JButton("ADD THEATRE");
+        addTheatreBtn = new JButton("ADD THEATRE");
         styleButton(addTheatreBtn);
         addTheatreBtn.addActionListener(e -> addTheatre());
         
@@ -198,6 +252,283 @@ public class AdminFrame extends JFrame {
         }
     }
 
+    private void importCatalog() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Movies, Theatres and Shows (CSV)");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        setCatalogWritesEnabled(false);
+
+        // Large files take a few seconds, so keep the import off the event thread
+        WORKERS.execute(new SwingWorker<CatalogImporter.ImportReport, Void>() {
+            @Override
+            protected CatalogImporter.ImportReport doInBackground() throws Exception {
+                try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    return dbManager.importCatalog(reader);
+                }
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                setCatalogWritesEnabled(true);
+                try {
+                    showImportReport(get());
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(AdminFrame.this, "Import failed: " + cause.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+    }
+
+    private void setCatalogWritesEnabled(boolean enabled) {
+        addMovieBtn.setEnabled(enabled);
+        addTheatreBtn.setEnabled(enabled);
+        importBtn.setEnabled(enabled);
+        scheduleBtn.setEnabled(enabled);
+        pricingBtn.setEnabled(enabled);
+    }
+
+    private void showImportReport(CatalogImporter.ImportReport report) {
+        if (report.getErrorCount() == 0) {
+            JOptionPane.showMessageDialog(this, report.summary(), "Import Complete", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        JTextArea errorsArea = new JTextArea(String.join("\n", report.getErrors()));
+        errorsArea.setFont(MODERN_FONT_PLAIN_14);
+        errorsArea.setEditable(false);
+        JScrollPane scrollPane = new JScrollPane(errorsArea);
+        scrollPane.setPreferredSize(new Dimension(600, 300));
+
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JLabel(report.summary()), BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, panel, "Import Complete With Errors", JOptionPane.WARNING_MESSAGE);
+    }
+
+    private void exportBookings() {
+        JComboBox<BookingExporter.Format> formatCombo = new JComboBox<>(BookingExporter.Format.values());
+        formatCombo.setFont(MODERN_FONT_PLAIN_14);
+        JTextField fromField = new JTextField();
+        fromField.setFont(MODERN_FONT_PLAIN_14);
+        JTextField toField = new JTextField();
+        toField.setFont(MODERN_FONT_PLAIN_14);
+        JCheckBox incrementalBox = new JCheckBox("Only bookings and cancellations since the last incremental export");
+        incrementalBox.setFont(MODERN_FONT_PLAIN_14);
+
+        JPanel panel = new JPanel(new GridLayout(4, 2, 5, 5));
+        panel.add(new JLabel("Format:")).setFont(MODERN_FONT_PLAIN_14);
+        panel.add(formatCombo);
+        panel.add(new JLabel("From date (yyyy-MM-dd, optional):")).setFont(MODERN_FONT_PLAIN_14);
+        panel.add(fromField);
+        panel.add(new JLabel("To date (yyyy-MM-dd, optional):")).setFont(MODERN_FONT_PLAIN_14);
+        panel.add(toField);
+        panel.add(new JLabel());
+        panel.add(incrementalBox);
+
+        int option = JOptionPane.showConfirmDialog(this, panel, "Export Bookings",
+            JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        BookingExporter.Format format = (BookingExporter.Format) formatCombo.getSelectedItem();
+        String from = fromField.getText().trim().isEmpty() ? null : fromField.getText().trim();
+        String to = toField.getText().trim().isEmpty() ? null : toField.getText().trim();
+        boolean incremental = incrementalBox.isSelected();
+        if (incremental && (from != null || to != null)) {
+            JOptionPane.showMessageDialog(this,
+                "An incremental export always covers every booking since the last one.\n"
+                + "Clear the dates, or untick the incremental option.",
+                "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Save Bookings Export");
+        chooser.setSelectedFile(new File(format == BookingExporter.Format.CSV ? "bookings.csv" : "bookings.mtbc"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+
+        WORKERS.execute(new SwingWorker<BookingExporter.ExportResult, Void>() {
+            @Override
+            protected BookingExporter.ExportResult doInBackground() throws Exception {
+                return dbManager.exportBookings(file.toPath(), format, from, to, incremental);
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    BookingExporter.ExportResult result = get();
+                    JOptionPane.showMessageDialog(AdminFrame.this,
+                        "Exported " + result.rows() + " bookings to " + file.getName()
+                            + (incremental ? " (" + result.statusChanges() + " of them status changes)" : ""),
+                        "Export Complete", JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(AdminFrame.this, "Export failed: " + cause.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+    }
+
+    private void generateSchedule() {
+        String input = JOptionPane.showInputDialog(this,
+            "Schedule shows on every screen for how many days from today?", "30");
+        if (input == null) {
+            return;
+        }
+        int days;
+        try {
+            days = Integer.parseInt(input.trim());
+        } catch (NumberFormatException e) {
+            days = 0;
+        }
+        if (days < 1 || days > 366) {
+            JOptionPane.showMessageDialog(this, "Enter a number of days between 1 and 366.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        int scheduleDays = days;
+        ArrayList<String> conflicts = new ArrayList<>();
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        setCatalogWritesEnabled(false);
+
+        WORKERS.execute(new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return dbManager.generateSchedule(LocalDate.now(), scheduleDays, conflicts);
+            }
+
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                setCatalogWritesEnabled(true);
+                try {
+                    String summary = get() + " shows added for the next " + scheduleDays + " days.";
+                    if (conflicts.isEmpty()) {
+                        JOptionPane.showMessageDialog(AdminFrame.this, summary,
+                            "Schedule Generated", JOptionPane.INFORMATION_MESSAGE);
+                        return;
+                    }
+                    JTextArea conflictsArea = new JTextArea(String.join("\n", conflicts));
+                    conflictsArea.setFont(MODERN_FONT_PLAIN_14);
+                    conflictsArea.setEditable(false);
+                    JScrollPane scrollPane = new JScrollPane(conflictsArea);
+                    scrollPane.setPreferredSize(new Dimension(600, 300));
+
+                    JPanel panel = new JPanel(new BorderLayout(5, 5));
+                    panel.add(new JLabel(summary + " Existing shows that overlap:"), BorderLayout.NORTH);
+                    panel.add(scrollPane, BorderLayout.CENTER);
+                    JOptionPane.showMessageDialog(AdminFrame.this, panel,
+                        "Schedule Generated With Conflicts", JOptionPane.WARNING_MESSAGE);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(AdminFrame.this, "Scheduling failed: " + cause.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+    }
+
+    private void editPricing() {
+        String[][] labels = {
+            {"base_price", "Base price (Rs.):"},
+            {"front_rows", "Front rows:"},
+            {"premium_rows", "Premium rows (at the back):"},
+            {"front_multiplier", "Front seat multiplier:"},
+            {"standard_multiplier", "Standard seat multiplier:"},
+            {"premium_multiplier", "Premium seat multiplier:"},
+            {"weekend_multiplier", "Weekend multiplier:"},
+            {"show_times", "Show times (HH:mm-HH:mm=multiplier, ...):"},
+            {"surge", "Surge (occupancy 0-1=multiplier, ...):"}
+        };
+        Map<String, String> current = dbManager.getPricingRules().toSettings();
+        Map<String, JTextField> fields = new LinkedHashMap<>();
+        JPanel panel = new JPanel(new GridLayout(labels.length, 2, 5, 5));
+        for (String[] label : labels) {
+            JTextField field = new JTextField(current.get(label[0]), 24);
+            field.setFont(MODERN_FONT_PLAIN_14);
+            fields.put(label[0], field);
+            panel.add(new JLabel(label[1])).setFont(MODERN_FONT_PLAIN_14);
+            panel.add(field);
+        }
+
+        int option = JOptionPane.showConfirmDialog(this, panel, "Pricing Rules",
+            JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        Map<String, String> settings = new LinkedHashMap<>();
+        for (Map.Entry<String, JTextField> field : fields.entrySet()) {
+            settings.put(field.getKey(), field.getValue().getText().trim());
+        }
+        PricingRules rules;
+        try {
+            rules = PricingRules.fromSettings(settings);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (dbManager.savePricingRules(rules)) {
+            JOptionPane.showMessageDialog(this, "Pricing rules saved. Other terminals use them within a few seconds.",
+                "Success", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(this, "Failed to save the pricing rules.", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void showAnalytics() {
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.setFont(MODERN_FONT_PLAIN_14);
+        List<Object[]> showRows = new ArrayList<>();
+        for (ShowRollup show : dbManager.getShowRollups()) {
+            showRows.add(new Object[]{show.movie(), show.theatre(), show.date(),
+                show.time() != null ? show.time() : "All day", show.seatsSold(), show.capacity(),
+                show.occupancy() != null ? show.occupancy() : "", String.format("%.2f", show.revenue())});
+        }
+        tabs.addTab("By Show", createRollupTable(showRows,
+            new String[]{"Movie", "Theatre", "Date", "Time", "Seats Sold", "Capacity", "Occupancy %", "Revenue"}));
+        tabs.addTab("By Day", createRollupTable(totalRows(dbManager.getDailyRollups()),
+            new String[]{"Date", "Seats Sold", "Revenue"}));
+        tabs.addTab("By Movie", createRollupTable(totalRows(dbManager.getMovieRollups()),
+            new String[]{"Movie", "Seats Sold", "Revenue"}));
+        tabs.setPreferredSize(new Dimension(850, 450));
+
+        JOptionPane.showMessageDialog(this, tabs, "Occupancy and Revenue", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    private List<Object[]> totalRows(List<SalesTotal> totals) {
+        List<Object[]> rows = new ArrayList<>();
+        for (SalesTotal total : totals) {
+            rows.add(new Object[]{total.key(), total.seatsSold(), String.format("%.2f", total.revenue())});
+        }
+        return rows;
+    }
+
+    private JScrollPane createRollupTable(List<Object[]> rows, String[] columns) {
+        DefaultTableModel model = new DefaultTableModel(columns, 0);
+        for (Object[] row : rows) {
+            model.addRow(row);
+        }
+        JTable table = new JTable(model);
+        table.setFont(MODERN_FONT_PLAIN_14);
+        table.getTableHeader().setFont(MODERN_FONT_BOLD_16);
+        table.getTableHeader().setBackground(ACCENT_YELLOW);
+        table.getTableHeader().setForeground(FOREGROUND_DARK);
+        table.setRowHeight(26);
+        table.setFillsViewportHeight(true);
+        return new JScrollPane(table);
+    }
+
     private void addTheatre() {
         String name = theatreNameField.getText().trim();
         String location = theatreLocationField.getText().trim();
@@ -209,20 +540,32 @@ public class AdminFrame extends JFrame {
         }
         
         int totalSeats;
+        int screens;
         try {
             totalSeats = Integer.parseInt(seatsStr);
+            String screensStr = screensField.getText().trim();
+            screens = screensStr.isEmpty() ? 1 : Integer.parseInt(screensStr);
         } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, "Total Seats must be a number.", "Error", JOptionPane.ERROR_MESSAGE);
+            JOptionPane.showMessageDialog(this, "Total Seats and Screens must be numbers.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (totalSeats < 1 || totalSeats > SeatLayout.MAX_CAPACITY) {
+            JOptionPane.showMessageDialog(this, "Total Seats must be between 1 and " + SeatLayout.MAX_CAPACITY + ".", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (screens < 1) {
+            JOptionPane.showMessageDialog(this, "A theatre needs at least one screen.", "Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        boolean success = dbManager.addTheatre(name, location, totalSeats); 
+        boolean success = dbManager.addTheatre(name, location, totalSeats, screens); 
         
         if (success) {
             JOptionPane.showMessageDialog(this, "Theatre '" + name + "' added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
             theatreNameField.setText("");
             theatreLocationField.setText("");
             totalSeatsField.setText("");
+            screensField.setText("");
         } else {
             JOptionPane.showMessageDialog(this, "Failed to add theatre. Check if name is unique.", "Error", JOptionPane.ERROR_MESSAGE);
         }
@@ -0,0 +1,7 @@
+package mtba;
+
+// One seat row as listed on the bookings screen; price is null for bookings made before prices were stored,
+// time is null for a theatre's all-day show
+public record Booking(int id, int orderId, String movie, String theatre, String date, String time, String seat,
+                      String customerName, String phone, Double price, String status, String bookingTime) {
+}
@@ -0,0 +1,436 @@
+package mtba;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams bookings to a file for accounting. Rows are read with a
+ * forward-only cursor in booking ID order and written straight out, so memory
+ * use does not grow with the number of bookings.
+ *
+ * Two formats are supported: CSV, and a compact columnar binary file
+ * ("MTBC") laid out as
+ *
+ * <pre>
+ * "MTBC" int version, short columnCount, columnCount x (UTF name, byte type)
+ * row groups: int rowCount, then one block per column
+ * int 0, long totalRows
+ * </pre>
+ *
+ * where a block is zigzag varint deltas for 'L' columns, raw doubles (NaN for
+ * null) for 'D' columns, and for 'S' columns a per-group dictionary (int size,
+ * UTF entries) followed by one varint index per row (0 = null, entries from 1).
+ *
+ * An incremental export includes the bookings with an ID above the
+ * watermark left by the previous incremental export, followed by the
+ * bookings that run had already exported whose status has changed since
+ * (cancellations), in the order the changes were made. Those are tracked
+ * with a second watermark on bookings.status_seq, which every status change
+ * sets to the shard's next number. Both are advanced once the file has been
+ * written. A booking ID can therefore appear in more than one file; the
+ * latest row is its current state. An incremental export cannot be combined
+ * with a date range: the watermark would move past bookings the range left
+ * out, and no later run would export them.
+ *
+ * With sharded storage (see ShardRouter) the shards are read one after the
+ * other. Shard k's IDs all lie above shard k-1's, so new bookings are in
+ * booking ID order, and each shard keeps its own watermarks.
+ */
+public class BookingExporter {
+
+    public enum Format { CSV, COLUMNAR }
+
+    public static final String WATERMARK_NAME = "accounting";
+    private static final int FETCH_SIZE = 1000;
+    private static final int ROW_GROUP_SIZE = 8192;
+
+    private static final String[] COLUMNS = {
+        "booking_id", "order_id", "movie", "theatre", "booking_date", "seat",
+        "customer", "phone", "price", "status", "booking_time", "cancelled_at"
+    };
+    private static final char[] TYPES = {'L', 'L', 'S', 'S', 'S', 'S', 'S', 'S', 'D', 'S', 'S', 'S'};
+
+    private static final String SELECT =
+            "SELECT b.id, b.order_id, m.name AS movie, t.name AS theatre, b.booking_date, " +
+            "b.seat_number, o.customer_name, o.phone, b.price, b.status, b.booking_time, b.cancelled_at " +
+            "FROM bookings b " +
+            "JOIN orders o ON b.order_id = o.id " +
+            "JOIN movies m ON b.movie_id = m.id " +
+            "JOIN theatres t ON b.theatre_id = t.id ";
+
+    private static final String NEW_BOOKINGS = SELECT +
+            "WHERE b.id > ? " +
+            "AND (? IS NULL OR b.booking_date >= ?) " +
+            "AND (? IS NULL OR b.booking_date <= ?) " +
+            "ORDER BY b.id";
+
+    // Bookings up to the ID watermark whose status changed after the status watermark
+    private static final String STATUS_CHANGES = SELECT +
+            "WHERE b.id <= ? AND b.status_seq > ? " +
+            "ORDER BY b.status_seq";
+
+    // rows counts both new bookings and status changes
+    public record ExportResult(long rows, long lastBookingId, long statusChanges) {
+    }
+
+    // How far the previous incremental export got on one shard
+    private record Watermark(long bookingId, long statusSeq) {
+    }
+
+    // One destination format; rows arrive one at a time in export order
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    // Watermarks are kept in the catalog; bookings are read from the shards
+    private final Connection conn;
+    private final List<Connection> shards;
+
+    public BookingExporter(Connection conn, List<Connection> shards) {
+        this.conn = conn;
+        this.shards = shards;
+    }
+
+    /**
+     * Exports bookings whose booking date lies within [fromDate, toDate]
+     * (either may be null for an open range). The file is written to a
+     * temporary sibling first and moved into place when complete.
+     *
+     * @throws IllegalArgumentException if incremental is combined with a date
+     */
+    public ExportResult export(Path target, Format format, String fromDate, String toDate,
+                               boolean incremental) throws IOException, SQLException {
+        if (incremental && (fromDate != null || toDate != null)) {
+            throw new IllegalArgumentException("An incremental export cannot be limited to a date range");
+        }
+        Watermark[] since = new Watermark[shards.size()];
+        long[] lastIds = new long[shards.size()];
+        long[] lastSeqs = new long[shards.size()];
+        for (int k = 0; k < shards.size(); k++) {
+            since[k] = incremental ? readWatermark(watermarkName(k)) : new Watermark(0, 0);
+            lastIds[k] = since[k].bookingId();
+            lastSeqs[k] = incremental ? latestStatusSeq(shards.get(k)) : 0;
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".part");
+
+        long rows = 0;
+        long statusChanges = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+            RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new ColumnarRowWriter(out);
+            for (int k = 0; k < shards.size(); k++) {
+                try (PreparedStatement pstmt = shards.get(k).prepareStatement(NEW_BOOKINGS,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                    pstmt.setFetchSize(FETCH_SIZE);
+                    pstmt.setLong(1, since[k].bookingId());
+                    pstmt.setString(2, fromDate);
+                    pstmt.setString(3, fromDate);
+                    pstmt.setString(4, toDate);
+                    pstmt.setString(5, toDate);
+
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            writer.write(rs);
+                            lastIds[k] = rs.getLong(1);
+                            rows++;
+                        }
+                    }
+                }
+                if (!incremental) {
+                    continue;
+                }
+                try (PreparedStatement pstmt = shards.get(k).prepareStatement(STATUS_CHANGES,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+                    pstmt.setFetchSize(FETCH_SIZE);
+                    pstmt.setLong(1, since[k].bookingId());
+                    pstmt.setLong(2, since[k].statusSeq());
+
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            writer.write(rs);
+                            rows++;
+                            statusChanges++;
+                        }
+                    }
+                }
+            }
+            writer.finish();
+        } catch (IOException | SQLException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+
+        long lastId = 0;
+        for (int k = 0; k < shards.size(); k++) {
+            if (incremental && (lastIds[k] > since[k].bookingId() || lastSeqs[k] > since[k].statusSeq())) {
+                saveWatermark(watermarkName(k), new Watermark(lastIds[k], Math.max(lastSeqs[k], since[k].statusSeq())));
+            }
+            lastId = Math.max(lastId, lastIds[k]);
+        }
+        return new ExportResult(rows, lastId, statusChanges);
+    }
+
+    // Status changes up to here are covered by this export: new bookings carry their current status
+    private static long latestStatusSeq(Connection shard) throws SQLException {
+        try (Statement stmt = shard.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(status_seq), 0) FROM bookings")) {
+            return rs.getLong(1);
+        }
+    }
+
+    // Shard 0 keeps the name used before sharding, so existing watermarks stay valid
+    private static String watermarkName(int shard) {
+        return shard == 0 ? WATERMARK_NAME : WATERMARK_NAME + "@shard" + shard;
+    }
+
+    private Watermark readWatermark(String name) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT last_booking_id, last_status_seq FROM export_watermarks WHERE name = ?")) {
+            pstmt.setString(1, name);
+            ResultSet rs = pstmt.executeQuery();
+            Watermark watermark = rs.next() ? new Watermark(rs.getLong(1), rs.getLong(2)) : new Watermark(0, 0);
+            rs.close();
+            return watermark;
+        }
+    }
+
+    private void saveWatermark(String name, Watermark watermark) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO export_watermarks (name, last_booking_id, last_status_seq, exported_at) " +
+                "VALUES (?, ?, ?, CURRENT_TIMESTAMP) " +
+                "ON CONFLICT(name) DO UPDATE SET last_booking_id = excluded.last_booking_id, " +
+                "last_status_seq = excluded.last_status_seq, exported_at = excluded.exported_at")) {
+            pstmt.setString(1, name);
+            pstmt.setLong(2, watermark.bookingId());
+            pstmt.setLong(3, watermark.statusSeq());
+            pstmt.executeUpdate();
+        }
+    }
+
+    // --- CSV ---
+
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer out;
+
+        CsvRowWriter(OutputStream stream) throws IOException {
+            out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            out.write(String.join(",", COLUMNS));
+            out.write('\n');
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                String value = TYPES[i] == 'D' && rs.getObject(i + 1) != null
+                        ? String.format("%.2f", rs.getDouble(i + 1)) : rs.getString(i + 1);
+                if (value != null) {
+                    out.write(escape(value));
+                }
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    // --- Columnar ---
+
+    private static class ColumnarRowWriter implements RowWriter {
+        private final DataOutputStream out;
+        private final long[][] longs = new long[COLUMNS.length][];
+        private final double[][] doubles = new double[COLUMNS.length][];
+        private final String[][] strings = new String[COLUMNS.length][];
+        private final HashMap<String, Integer> dictionary = new HashMap<>();
+        private int buffered;
+        private long totalRows;
+
+        ColumnarRowWriter(OutputStream stream) throws IOException {
+            out = new DataOutputStream(stream);
+            out.writeBytes("MTBC");
+            out.writeInt(1);
+            out.writeShort(COLUMNS.length);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                out.writeUTF(COLUMNS[i]);
+                out.writeByte(TYPES[i]);
+                if (TYPES[i] == 'L') {
+                    longs[i] = new long[ROW_GROUP_SIZE];
+                } else if (TYPES[i] == 'D') {
+                    doubles[i] = new double[ROW_GROUP_SIZE];
+                } else {
+                    strings[i] = new String[ROW_GROUP_SIZE];
+                }
+            }
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (TYPES[i] == 'L') {
+                    longs[i][buffered] = rs.getLong(i + 1);
+                } else if (TYPES[i] == 'D') {
+                    double value = rs.getDouble(i + 1);
+                    doubles[i][buffered] = rs.wasNull() ? Double.NaN : value;
+                } else {
+                    strings[i][buffered] = rs.getString(i + 1);
+                }
+            }
+            if (++buffered == ROW_GROUP_SIZE) {
+                writeGroup();
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writeGroup();
+            out.writeInt(0);
+            out.writeLong(totalRows);
+            out.flush();
+        }
+
+        private void writeGroup() throws IOException {
+            if (buffered == 0) {
+                return;
+            }
+            out.writeInt(buffered);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (TYPES[i] == 'L') {
+                    long previous = 0;
+                    for (int r = 0; r < buffered; r++) {
+                        long delta = longs[i][r] - previous;
+                        writeVarLong((delta << 1) ^ (delta >> 63));
+                        previous = longs[i][r];
+                    }
+                } else if (TYPES[i] == 'D') {
+                    for (int r = 0; r < buffered; r++) {
+                        out.writeDouble(doubles[i][r]);
+                    }
+                } else {
+                    writeStrings(strings[i]);
+                }
+            }
+            totalRows += buffered;
+            buffered = 0;
+        }
+
+        private void writeStrings(String[] values) throws IOException {
+            dictionary.clear();
+            int[] indexes = new int[buffered];
+            for (int r = 0; r < buffered; r++) {
+                String value = values[r];
+                if (value != null) {
+                    Integer index = dictionary.get(value);
+                    if (index == null) {
+                        index = dictionary.size() + 1;
+                        dictionary.put(value, index);
+                    }
+                    indexes[r] = index;
+                }
+            }
+            String[] entries = new String[dictionary.size()];
+            for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+                entries[entry.getValue() - 1] = entry.getKey();
+            }
+            out.writeInt(entries.length);
+            for (String entry : entries) {
+                out.writeUTF(entry);
+            }
+            for (int r = 0; r < buffered; r++) {
+                writeVarLong(indexes[r]);
+                values[r] = null;
+            }
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * Command line entry point for nightly jobs:
+     * <pre>
+     * java -cp &lt;jar&gt; mtba.BookingExporter &lt;out-file&gt; [--format csv|columnar]
+     *      [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--incremental]
+     * </pre>
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java -cp <jar> mtba.BookingExporter <out-file> [--format csv|columnar] "
+                    + "[--from yyyy-MM-dd] [--to yyyy-MM-dd] [--incremental]");
+            System.exit(2);
+        }
+        Format format = Format.CSV;
+        String from = null;
+        String to = null;
+        boolean incremental = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format":
+                    format = Format.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--from":
+                    from = args[++i];
+                    break;
+                case "--to":
+                    to = args[++i];
+                    break;
+                case "--incremental":
+                    incremental = true;
+                    break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        DatabaseManager dbManager = new DatabaseManager();
+        try {
+            long start = System.nanoTime();
+            ExportResult result = dbManager.exportBookings(Paths.get(args[0]), format, from, to, incremental);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Exported " + result.rows() + " bookings (up to ID "
+                    + result.lastBookingId() + ", " + result.statusChanges() + " status changes) in "
+                    + millis + " ms");
+        } catch (IOException | SQLException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            dbManager.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package mtba;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only journal of bookings taken while the database could not
+ * be reached (file share down, file locked for maintenance). A booking is
+ * only reported as taken once its line has been forced to disk, so a crash
+ * or power cut cannot lose it. When the database is back the entries are
+ * replayed into it in journal order; entries whose seats were meanwhile sold
+ * elsewhere are kept as conflicts until someone has dealt with them.
+ *
+ * One line per record, "crc32 TAB kind TAB fields...":
+ * <ul>
+ * <li>B: a booking (seq, movie, theatre, date, seats, customer, prices, time,
+ * then the show ID and show time; lines written before shows had IDs end
+ * after the time and are replayed as all-day shows)</li>
+ * <li>R: booking seq was replayed as the given order</li>
+ * <li>C: booking seq could not be replayed, with the reason</li>
+ * <li>A: the conflict for seq has been acknowledged</li>
+ * </ul>
+ * A torn last line (crash mid-write) fails its checksum and is cut off on
+ * open. The file is emptied whenever nothing is pending or unacknowledged.
+ *
+ * Enabled with -Dmtba.journal=&lt;file&gt;. The file is locked while open, so
+ * only one process can use it; DatabaseManagers in the same process share it.
+ */
+public class BookingJournal {
+
+    private static final Map<Path, BookingJournal> OPEN = new HashMap<>();
+
+    public static final class Entry {
+        private final long seq;
+        private final int movieId;
+        private final String movieName;
+        private final int theatreId;
+        private final String theatreName;
+        private final String date;
+        private final int showId;
+        private final String showTime;
+        private final ArrayList<String> seats;
+        private final String customerName;
+        private final String phone;
+        private final double[] prices;
+        private final long takenAt;
+        private String conflict;
+
+        Entry(long seq, int movieId, String movieName, int theatreId, String theatreName, String date,
+              int showId, String showTime, ArrayList<String> seats, String customerName, String phone,
+              double[] prices, long takenAt) {
+            this.seq = seq;
+            this.movieId = movieId;
+            this.movieName = movieName;
+            this.theatreId = theatreId;
+            this.theatreName = theatreName;
+            this.date = date;
+            this.showId = showId;
+            this.showTime = showTime;
+            this.seats = seats;
+            this.customerName = customerName;
+            this.phone = phone;
+            this.prices = prices;
+            this.takenAt = takenAt;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public int getMovieId() {
+            return movieId;
+        }
+
+        public String getMovieName() {
+            return movieName;
+        }
+
+        public int getTheatreId() {
+            return theatreId;
+        }
+
+        public String getTheatreName() {
+            return theatreName;
+        }
+
+        public String getDate() {
+            return date;
+        }
+
+        public ShowTime getShow() {
+            return showId == 0 ? ShowTime.allDay(date) : new ShowTime(showId, date, showTime, 0);
+        }
+
+        public ArrayList<String> getSeats() {
+            return seats;
+        }
+
+        public String getCustomerName() {
+            return customerName;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public double[] getPrices() {
+            return prices;
+        }
+
+        public long getTakenAt() {
+            return takenAt;
+        }
+
+        // Why the entry could not be replayed, or null
+        public String getConflict() {
+            return conflict;
+        }
+
+        public double getTotal() {
+            double total = 0;
+            for (double price : prices) {
+                total += price;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + seq + " " + customerName + " (" + phone + "): " + movieName + " at " + theatreName
+                    + " on " + date + (showTime != null ? " " + showTime : "") + ", seats " + seats + (conflict != null ? " - " + conflict : "");
+        }
+    }
+
+    // Outcome of one replay run: entries replayed, entries that failed in this run, and entries
+    // still waiting because the database went away again during the run
+    public record ReplayReport(int replayed, List<Entry> conflicts, int pending) {
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    // Held until the process exits
+    private final FileLock lock;
+    private final LinkedHashMap<Long, Entry> pending = new LinkedHashMap<>();
+    private final LinkedHashMap<Long, Entry> conflicts = new LinkedHashMap<>();
+    private long nextSeq = 1;
+
+    private BookingJournal(Path path) throws IOException {
+        this.path = path;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException("Journal " + path + " is in use by another process");
+            }
+            recover();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // The journal named by -Dmtba.journal, or null if offline booking is not enabled or the file cannot be opened
+    public static BookingJournal configured() {
+        String file = System.getProperty("mtba.journal");
+        if (file == null || file.isEmpty()) {
+            return null;
+        }
+        try {
+            return open(Paths.get(file));
+        } catch (IOException e) {
+            System.err.println("Offline booking disabled: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static synchronized BookingJournal open(Path path) throws IOException {
+        Path key = path.toAbsolutePath().normalize();
+        BookingJournal journal = OPEN.get(key);
+        if (journal == null) {
+            journal = new BookingJournal(key);
+            OPEN.put(key, journal);
+        }
+        return journal;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes a booking and forces it to disk before returning. The entry is
+     * pending until markReplayed() or markConflict().
+     */
+    public synchronized Entry append(Movie movie, Theatre theatre, ShowTime show, ArrayList<String> seats,
+                                     String customerName, String phone, double[] prices) throws IOException {
+        Entry entry = new Entry(nextSeq, movie.id(), movie.name(), theatre.id(), theatre.name(), show.date(),
+                show.id(), show.time(), new ArrayList<>(seats), customerName, phone, prices.clone(),
+                System.currentTimeMillis());
+        StringBuilder priceList = new StringBuilder();
+        for (double price : prices) {
+            if (priceList.length() > 0) {
+                priceList.append(',');
+            }
+            priceList.append(price);
+        }
+        write("B", Long.toString(entry.seq), Integer.toString(entry.movieId), entry.movieName,
+                Integer.toString(entry.theatreId), entry.theatreName, entry.date, String.join(",", entry.seats),
+                customerName, phone, priceList.toString(), Long.toString(entry.takenAt),
+                Integer.toString(entry.showId), entry.showTime != null ? entry.showTime : "");
+        nextSeq++;
+        pending.put(entry.seq, entry);
+        return entry;
+    }
+
+    public synchronized void markReplayed(Entry entry, long orderId) throws IOException {
+        write("R", Long.toString(entry.seq), Long.toString(orderId));
+        pending.remove(entry.seq);
+        truncateIfSettled();
+    }
+
+    public synchronized void markConflict(Entry entry, String reason) throws IOException {
+        write("C", Long.toString(entry.seq), reason);
+        pending.remove(entry.seq);
+        entry.conflict = reason;
+        conflicts.put(entry.seq, entry);
+    }
+
+    // Drops every conflict from the journal once staff have followed them up
+    public synchronized void acknowledgeConflicts() throws IOException {
+        for (long seq : new ArrayList<>(conflicts.keySet())) {
+            write("A", Long.toString(seq));
+            conflicts.remove(seq);
+        }
+        truncateIfSettled();
+    }
+
+    // Oldest first
+    public synchronized List<Entry> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    public synchronized List<Entry> conflicts() {
+        return new ArrayList<>(conflicts.values());
+    }
+
+    private void write(String kind, String... fields) throws IOException {
+        StringBuilder payload = new StringBuilder(kind);
+        for (String field : fields) {
+            // Tabs and line breaks would break the record; customer input is the only source of them
+            payload.append('\t').append(field.replaceAll("[\\t\\r\\n]", " "));
+        }
+        byte[] bytes = payload.toString().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ByteBuffer line = ByteBuffer.wrap((String.format("%08x\t", crc.getValue())
+                + payload + "\n").getBytes(StandardCharsets.UTF_8));
+
+        long position = channel.size();
+        while (line.hasRemaining()) {
+            position += channel.write(line, position);
+        }
+        channel.force(true);
+    }
+
+    private void truncateIfSettled() throws IOException {
+        if (pending.isEmpty() && conflicts.isEmpty() && channel.size() > 0) {
+            channel.truncate(0);
+            channel.force(true);
+        }
+    }
+
+    // Rebuilds the pending and conflict lists from the file, cutting off a torn last line
+    private void recover() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        byte[] bytes = buffer.array();
+
+        int start = 0;
+        int validEnd = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            if (!replay(line)) {
+                System.err.println("Skipping damaged journal line in " + path + ": " + line);
+            }
+            start = i + 1;
+            validEnd = start;
+        }
+        if (validEnd < bytes.length) {
+            System.err.println("Discarding incomplete last record of journal " + path);
+            channel.truncate(validEnd);
+            channel.force(true);
+        }
+        if (!pending.isEmpty() || !conflicts.isEmpty()) {
+            System.out.println("Journal " + path + ": " + pending.size() + " booking(s) waiting for replay, "
+                    + conflicts.size() + " conflict(s) to follow up");
+        }
+    }
+
+    // Applies one journal line to the in-memory state; false if it is damaged
+    private boolean replay(String line) {
+        int tab = line.indexOf('\t');
+        if (tab != 8) {
+            return false;
+        }
+        String payload = line.substring(tab + 1);
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        if (!line.substring(0, tab).equals(String.format("%08x", crc.getValue()))) {
+            return false;
+        }
+
+        String[] fields = payload.split("\t", -1);
+        try {
+            long seq = Long.parseLong(fields[1]);
+            switch (fields[0]) {
+                case "B":
+                    String[] priceList = fields[10].isEmpty() ? new String[0] : fields[10].split(",");
+                    double[] prices = new double[priceList.length];
+                    for (int i = 0; i < prices.length; i++) {
+                        prices[i] = Double.parseDouble(priceList[i]);
+                    }
+                    int showId = fields.length > 12 ? Integer.parseInt(fields[12]) : 0;
+                    String showTime = fields.length > 13 && !fields[13].isEmpty() ? fields[13] : null;
+                    pending.put(seq, new Entry(seq, Integer.parseInt(fields[2]), fields[3],
+                            Integer.parseInt(fields[4]), fields[5], fields[6], showId, showTime,
+                            new ArrayList<>(Arrays.asList(fields[7].split(","))),
+                            fields[8], fields[9], prices, Long.parseLong(fields[11])));
+                    nextSeq = Math.max(nextSeq, seq + 1);
+                    return true;
+                case "R":
+                    pending.remove(seq);
+                    return true;
+                case "C":
+                    Entry entry = pending.remove(seq);
+                    if (entry != null) {
+                        entry.conflict = fields[2];
+                        conflicts.put(seq, entry);
+                    }
+                    return true;
+                case "A":
+                    conflicts.remove(seq);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package mtba;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the booking path, shared by every DatabaseManager in the
+ * process so a terminal's numbers can be read from any screen.
+ */
+public class BookingMetrics {
+
+    public static final BookingMetrics INSTANCE = new BookingMetrics();
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong versionConflicts = new AtomicLong();
+    private final AtomicLong busyErrors = new AtomicLong();
+    private final AtomicLong seatsTaken = new AtomicLong();
+    private final AtomicLong aborts = new AtomicLong();
+    private final AtomicLong offline = new AtomicLong();
+
+    void attempt() {
+        attempts.incrementAndGet();
+    }
+
+    void success() {
+        successes.incrementAndGet();
+    }
+
+    void retry() {
+        retries.incrementAndGet();
+    }
+
+    void versionConflict() {
+        versionConflicts.incrementAndGet();
+    }
+
+    void busy() {
+        busyErrors.incrementAndGet();
+    }
+
+    void seatsTaken() {
+        seatsTaken.incrementAndGet();
+    }
+
+    void abort() {
+        aborts.incrementAndGet();
+    }
+
+    void offline() {
+        offline.incrementAndGet();
+    }
+
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    public long getSuccesses() {
+        return successes.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getVersionConflicts() {
+        return versionConflicts.get();
+    }
+
+    public long getBusyErrors() {
+        return busyErrors.get();
+    }
+
+    public long getSeatsTaken() {
+        return seatsTaken.get();
+    }
+
+    public long getAborts() {
+        return aborts.get();
+    }
+
+    public long getOffline() {
+        return offline.get();
+    }
+
+    @Override
+    public String toString() {
+        return "attempts=" + attempts + ", successes=" + successes + ", retries=" + retries
+                + ", versionConflicts=" + versionConflicts + ", busy=" + busyErrors
+                + ", seatsTaken=" + seatsTaken + ", aborts=" + aborts + ", offline=" + offline;
+    }
+}
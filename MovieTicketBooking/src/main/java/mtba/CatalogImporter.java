@@ -0,0 +1,491 @@
+package mtba;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Streams a catalog CSV into the movies, theatres and shows tables. Each line
+ * starts with its record type:
+ *
+ * <pre>
+ * movie,&lt;title&gt;,&lt;genre&gt;,&lt;duration min&gt;,&lt;rating&gt;
+ * theatre,&lt;name&gt;,&lt;location&gt;,&lt;total seats&gt;[,&lt;screens&gt;]
+ * show,&lt;movie title&gt;,&lt;theatre name&gt;,&lt;yyyy-MM-dd&gt;,&lt;HH:mm&gt;[,&lt;screen&gt;]
+ * </pre>
+ *
+ * Blank lines, lines starting with '#' and a leading "type,..." header are
+ * skipped. Rows are validated as they are read and upserted (existing names
+ * are updated in place) in batched transactions of {@link #BATCH_SIZE} rows,
+ * so only one batch is ever held in memory. Invalid rows are reported by line
+ * number and do not stop the import.
+ *
+ * Shows are not updated: a show row for a slot (theatre, screen, date, time)
+ * that already exists is skipped, and reported if it names a different
+ * movie, since tickets may already be sold for the film that is on.
+ *
+ * A theatre row without a screens column gets one screen if it is new and
+ * keeps its screens if it exists.
+ */
+public class CatalogImporter {
+
+    public static final int BATCH_SIZE = 5000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    public static class ImportReport {
+        private int rowsRead;
+        private int movies;
+        private int theatres;
+        private int shows;
+        private int errorCount;
+        private final List<String> errors = new ArrayList<>();
+
+        void error(int line, String message) {
+            error("Line " + line + ": " + message);
+        }
+
+        void error(String message) {
+            errorCount++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(message);
+            }
+        }
+
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        public int getMovies() {
+            return movies;
+        }
+
+        public int getTheatres() {
+            return theatres;
+        }
+
+        public int getShows() {
+            return shows;
+        }
+
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        // At most the first 1000 errors; getErrorCount() has the full count
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public String summary() {
+            return rowsRead + " rows read: " + movies + " movies, " + theatres + " theatres, "
+                    + shows + " shows imported, " + errorCount + " errors";
+        }
+    }
+
+    private static final class Row {
+        final int line;
+        final String type;
+        final List<String> fields;
+
+        Row(int line, String type, List<String> fields) {
+            this.line = line;
+            this.type = type;
+            this.fields = fields;
+        }
+    }
+
+    private final Connection conn;
+    private final HashMap<String, Integer> movieIds = new HashMap<>();
+    private final HashMap<String, Integer> theatreIds = new HashMap<>();
+    private final ArrayList<Row> pending = new ArrayList<>();
+    // Errors found while writing a batch; only reported once the batch commits
+    private final ArrayList<String> batchErrors = new ArrayList<>();
+    private ImportReport report;
+
+    public CatalogImporter(Connection conn) {
+        this.conn = conn;
+    }
+
+    public ImportReport importCsv(Reader source) throws IOException, SQLException {
+        report = new ImportReport();
+        loadIds("movies", movieIds);
+        loadIds("theatres", theatreIds);
+
+        BufferedReader reader = source instanceof BufferedReader
+                ? (BufferedReader) source : new BufferedReader(source);
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            String text;
+            int line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                String trimmed = text.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")
+                        || (line == 1 && trimmed.toLowerCase().startsWith("type,"))) {
+                    continue;
+                }
+                report.rowsRead++;
+                Row row = parse(line, trimmed);
+                if (row != null) {
+                    pending.add(row);
+                    if (pending.size() >= BATCH_SIZE) {
+                        flush();
+                    }
+                }
+            }
+            flush();
+        } catch (IOException | SQLException | RuntimeException e) {
+            // Drop the rows of the unfinished batch; restoring autocommit below would commit them
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return report;
+    }
+
+    // --- Parsing and validation ---
+
+    private Row parse(int line, String text) {
+        List<String> fields = splitCsv(text);
+        if (fields == null) {
+            report.error(line, "unterminated quoted field");
+            return null;
+        }
+        String type = fields.get(0).trim().toLowerCase();
+        List<String> values = fields.subList(1, fields.size());
+        String problem;
+        switch (type) {
+            case "movie":
+                problem = validateMovie(values);
+                break;
+            case "theatre":
+                problem = validateTheatre(values);
+                break;
+            case "show":
+                problem = validateShow(values);
+                break;
+            default:
+                problem = "unknown record type '" + fields.get(0) + "'";
+        }
+        if (problem != null) {
+            report.error(line, problem);
+            return null;
+        }
+        return new Row(line, type, new ArrayList<>(values));
+    }
+
+    private String validateMovie(List<String> v) {
+        if (v.size() != 4) {
+            return "movie needs title, genre, duration, rating";
+        }
+        if (v.get(0).isEmpty()) {
+            return "movie title is empty";
+        }
+        return checkInt(v.get(2), "duration", 1, 1000);
+    }
+
+    private String validateTheatre(List<String> v) {
+        if (v.size() != 3 && v.size() != 4) {
+            return "theatre needs name, location, total seats and optionally screens";
+        }
+        if (v.get(0).isEmpty()) {
+            return "theatre name is empty";
+        }
+        String problem = checkInt(v.get(2), "total seats", 1, SeatLayout.MAX_CAPACITY);
+        if (problem == null && v.size() == 4) {
+            problem = checkInt(v.get(3), "screens", 1, 100);
+        }
+        return problem;
+    }
+
+    private String validateShow(List<String> v) {
+        if (v.size() != 4 && v.size() != 5) {
+            return "show needs movie, theatre, date, time and optionally screen";
+        }
+        try {
+            LocalDate.parse(v.get(2));
+        } catch (DateTimeParseException e) {
+            return "invalid date '" + v.get(2) + "' (expected yyyy-MM-dd)";
+        }
+        try {
+            LocalTime.parse(v.get(3));
+        } catch (DateTimeParseException e) {
+            return "invalid time '" + v.get(3) + "' (expected HH:mm)";
+        }
+        return v.size() == 5 ? checkInt(v.get(4), "screen", 1, 100) : null;
+    }
+
+    private String checkInt(String value, String name, int min, int max) {
+        try {
+            int n = Integer.parseInt(value);
+            return n < min || n > max ? name + " must be between " + min + " and " + max : null;
+        } catch (NumberFormatException e) {
+            return name + " '" + value + "' is not a number";
+        }
+    }
+
+    // Splits one CSV line, honouring double quotes ("" inside quotes is a literal quote)
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    // --- Batched upserts ---
+
+    private void flush() throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int[] counts;
+        try {
+            counts = write(pending, false);
+            conn.commit();
+        } catch (SQLException e) {
+            // Something in the batch was rejected: redo it row by row to pin down the bad lines
+            conn.rollback();
+            batchErrors.clear();
+            reloadIds();
+            counts = write(pending, true);
+            conn.commit();
+        }
+        report.movies += counts[0];
+        report.theatres += counts[1];
+        report.shows += counts[2];
+        for (String error : batchErrors) {
+            report.error(error);
+        }
+        batchErrors.clear();
+        pending.clear();
+    }
+
+    private void batchError(Row row, String message) {
+        batchErrors.add("Line " + row.line + ": " + message);
+    }
+
+    // Movies and theatres go first so shows in the same batch can refer to them
+    private int[] write(List<Row> rows, boolean rowByRow) throws SQLException {
+        int[] counts = new int[3];
+        try (PreparedStatement movieStmt = conn.prepareStatement(
+                     "INSERT INTO movies (name, genre, duration, rating) VALUES (?, ?, ?, ?) " +
+                     "ON CONFLICT(name) DO UPDATE SET genre = excluded.genre, " +
+                     "duration = excluded.duration, rating = excluded.rating");
+             PreparedStatement theatreStmt = conn.prepareStatement(
+                     "INSERT INTO theatres (name, location, total_seats, screens) VALUES (?, ?, ?, COALESCE(?, 1)) " +
+                     "ON CONFLICT(name) DO UPDATE SET location = excluded.location, " +
+                     "total_seats = excluded.total_seats, screens = COALESCE(?, theatres.screens)");
+             PreparedStatement showStmt = conn.prepareStatement(
+                     "INSERT INTO shows (movie_id, theatre_id, screen, show_date, show_time) " +
+                     "VALUES (?, ?, ?, ?, ?) " +
+                     "ON CONFLICT(theatre_id, screen, show_date, show_time) DO NOTHING");
+             PreparedStatement slotStmt = conn.prepareStatement(
+                     "SELECT movie_id FROM shows WHERE theatre_id = ? AND screen = ? AND show_date = ? AND show_time = ?")) {
+
+            ArrayList<String> newMovies = new ArrayList<>();
+            ArrayList<String> newTheatres = new ArrayList<>();
+            for (Row row : rows) {
+                List<String> v = row.fields;
+                if (row.type.equals("movie")) {
+                    movieStmt.setString(1, v.get(0));
+                    movieStmt.setString(2, v.get(1));
+                    movieStmt.setInt(3, Integer.parseInt(v.get(2)));
+                    movieStmt.setString(4, v.get(3));
+                    counts[0] += execute(movieStmt, row, rowByRow);
+                    newMovies.add(v.get(0));
+                } else if (row.type.equals("theatre")) {
+                    theatreStmt.setString(1, v.get(0));
+                    theatreStmt.setString(2, v.get(1));
+                    theatreStmt.setInt(3, Integer.parseInt(v.get(2)));
+                    Integer screens = v.size() == 4 ? Integer.valueOf(v.get(3)) : null;
+                    theatreStmt.setObject(4, screens, Types.INTEGER);
+                    theatreStmt.setObject(5, screens, Types.INTEGER);
+                    counts[1] += execute(theatreStmt, row, rowByRow);
+                    newTheatres.add(v.get(0));
+                }
+            }
+            if (!rowByRow) {
+                counts[0] = sum(movieStmt.executeBatch());
+                counts[1] = sum(theatreStmt.executeBatch());
+            }
+            resolveIds("movies", newMovies, movieIds);
+            resolveIds("theatres", newTheatres, theatreIds);
+
+            // Movie per slot taken by earlier rows of this batch, which are not in the table yet
+            HashMap<String, Integer> batchSlots = new HashMap<>();
+            for (Row row : rows) {
+                if (!row.type.equals("show")) {
+                    continue;
+                }
+                List<String> v = row.fields;
+                Integer movieId = movieIds.get(v.get(0));
+                Integer theatreId = theatreIds.get(v.get(1));
+                if (movieId == null || theatreId == null) {
+                    batchError(row, movieId == null
+                            ? "unknown movie '" + v.get(0) + "'" : "unknown theatre '" + v.get(1) + "'");
+                    continue;
+                }
+                int screen = v.size() == 5 ? Integer.parseInt(v.get(4)) : 1;
+                String time = LocalTime.parse(v.get(3)).toString();
+                String slot = theatreId + ":" + screen + ":" + v.get(2) + ":" + time;
+                Integer showing = batchSlots.containsKey(slot)
+                        ? batchSlots.get(slot) : movieInSlot(slotStmt, theatreId, screen, v.get(2), time);
+                if (showing != null) {
+                    if (showing.intValue() != movieId) {
+                        batchError(row, "screen " + screen + " of '" + v.get(1) + "' already shows another movie on "
+                                + v.get(2) + " at " + time + "; shows are never replaced by an import");
+                    }
+                    continue;
+                }
+                batchSlots.put(slot, movieId);
+                showStmt.setInt(1, movieId);
+                showStmt.setInt(2, theatreId);
+                showStmt.setInt(3, screen);
+                showStmt.setString(4, v.get(2));
+                showStmt.setString(5, time);
+                counts[2] += execute(showStmt, row, rowByRow);
+            }
+            if (!rowByRow) {
+                counts[2] = sum(showStmt.executeBatch());
+            }
+        }
+        return counts;
+    }
+
+    // The movie already showing in the slot, or null if it is free
+    private static Integer movieInSlot(PreparedStatement slotStmt, int theatreId, int screen, String date, String time)
+            throws SQLException {
+        slotStmt.setInt(1, theatreId);
+        slotStmt.setInt(2, screen);
+        slotStmt.setString(3, date);
+        slotStmt.setString(4, time);
+        try (ResultSet rs = slotStmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : null;
+        }
+    }
+
+    // Adds the row to the batch, or runs it straight away and reports a failure against its line
+    private int execute(PreparedStatement stmt, Row row, boolean rowByRow) throws SQLException {
+        if (!rowByRow) {
+            stmt.addBatch();
+            return 0;
+        }
+        Savepoint savepoint = conn.setSavepoint();
+        try {
+            int updated = stmt.executeUpdate();
+            conn.releaseSavepoint(savepoint);
+            return updated > 0 ? 1 : 0;
+        } catch (SQLException e) {
+            conn.rollback(savepoint);
+            batchError(row, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static int sum(int[] results) {
+        int total = 0;
+        for (int result : results) {
+            if (result > 0 || result == Statement.SUCCESS_NO_INFO) {
+                total++;
+            }
+        }
+        return total;
+    }
+
+    private void loadIds(String table, HashMap<String, Integer> ids) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM " + table)) {
+            while (rs.next()) {
+                ids.put(rs.getString("name"), rs.getInt("id"));
+            }
+        }
+    }
+
+    private void reloadIds() throws SQLException {
+        movieIds.clear();
+        theatreIds.clear();
+        loadIds("movies", movieIds);
+        loadIds("theatres", theatreIds);
+    }
+
+    private void resolveIds(String table, List<String> names, HashMap<String, Integer> ids) throws SQLException {
+        if (names.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM " + table + " WHERE name = ?")) {
+            for (String name : names) {
+                if (ids.containsKey(name)) {
+                    continue;
+                }
+                pstmt.setString(1, name);
+                ResultSet rs = pstmt.executeQuery();
+                if (rs.next()) {
+                    ids.put(name, rs.getInt(1));
+                }
+                rs.close();
+            }
+        }
+    }
+
+    /**
+     * Command line entry point: imports the given CSV file into movie_booking.db
+     * (see ShardRouter for where it is) and prints the report.
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java -cp <jar> mtba.CatalogImporter <catalog.csv>");
+            System.exit(2);
+        }
+        DatabaseManager dbManager = new DatabaseManager();
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            long start = System.nanoTime();
+            ImportReport report = dbManager.importCatalog(reader);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            for (String error : report.getErrors()) {
+                System.err.println(error);
+            }
+            System.out.println(report.summary() + " in " + millis + " ms");
+        } catch (IOException | SQLException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            dbManager.closeConnection();
+        }
+    }
+}
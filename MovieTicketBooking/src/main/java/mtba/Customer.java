@@ -0,0 +1,5 @@
+package mtba;
+
+// A customer, known by phone number; email is null until one has been given
+public record Customer(int id, String name, String phone, String email) {
+}
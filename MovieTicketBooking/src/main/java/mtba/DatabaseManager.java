@@ -1,22 +1,136 @@
 package mtba;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 public class DatabaseManager {
+    // bookTickets() results other than an order ID
+    public static final int BOOKING_FAILED = -1;
+    public static final int SEATS_UNAVAILABLE = -2;
+    // Database out of reach: the booking was written to the offline journal and will be replayed later
+    public static final int BOOKED_OFFLINE = -3;
+
+    // How long to keep booking offline after the database was found unavailable, before trying it again
+    private static final long OFFLINE_PROBE_MS = Long.getLong("mtba.journal.probeMs", 5000);
+    // How often a search checks whether the movies table has changed under the type-ahead index
+    private static final long MOVIE_INDEX_CHECK_MS = 1000;
+
+    // Identifies one show by catalog IDs; showId is 0 for the all-day show of a theatre without a schedule
+    private record ShowRef(int movieId, int theatreId, String date, int showId) {
+
+        static ShowRef of(Movie movie, Theatre theatre, ShowTime show) {
+            return new ShowRef(movie.id(), theatre.id(), show.date(), show.id());
+        }
+
+        String key() {
+            return SeatInventory.showKey(movieId, theatreId, date, showId);
+        }
+    }
+
     private Connection conn;
+    // Bookings, orders, show versions and rollups live in the theatre's shard
+    private ShardRouter shards;
+    // Reports and catalog lists read from here, so they stay off the files bookings write to
+    private SnapshotReader snapshotReader;
+    // Type-ahead index over movie names and genres, and the movie count and highest ID it was built from
+    private MovieSearchIndex movieIndex;
+    private String movieIndexSignature;
+    private long movieIndexCheckedAt;
+    private final SeatInventory seatInventory = new SeatInventory();
+    // Seat layout per theatre ID, derived from its seat count
+    private final ConcurrentHashMap<Integer, SeatLayout> theatreLayouts = new ConcurrentHashMap<>();
+    // Held by background catalog writers, see openCatalogWriter()
+    private final Object catalogWriteLock = new Object();
+    private final PricingEngine pricingEngine = new PricingEngine();
+    private final PasswordHasher passwordHasher = new PasswordHasher();
+    private final LoginThrottle loginThrottle = new LoginThrottle();
+    private record Credential(String hash, String role) {
+    }
+
+    // Saves a database read on every login attempt
+    private final ConcurrentHashMap<String, Credential> credentialCache = new ConcurrentHashMap<>();
+    // Verified against when the username does not exist, so unknown users cost the same as wrong passwords.
+    // Hashed up front: doing it on first use would make that one attempt measurably slower.
+    private final String dummyHash = passwordHasher.hash("not-a-real-password".toCharArray());
+    private final RetryPolicy retryPolicy = new RetryPolicy();
+    private final BookingMetrics bookingMetrics = BookingMetrics.INSTANCE;
+    // Offline booking journal, or null if offline booking is not enabled
+    private final BookingJournal journal = BookingJournal.configured();
+    // Until then the database is taken to be unavailable and bookings go straight to the journal
+    private volatile long offlineUntil;
+    // Customers served recently, by phone number (digits only); the least recently used drop out first
+    private static final int RECENT_CUSTOMERS = Integer.getInteger("mtba.recentCustomers", 1000);
+    private final LinkedHashMap<String, Customer> recentCustomers = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Customer> eldest) {
+            return size() > RECENT_CUSTOMERS;
+        }
+    };
+    // Reads that span every shard query the shards side by side, one virtual thread per shard
+    private final ExecutorService shardReaders = Executors.newVirtualThreadPerTaskExecutor();
+    // Replays the offline journal in the background once the database is back; one replay at a time
+    private final ExecutorService journalReplayer = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicBoolean replayScheduled = new AtomicBoolean();
+    private final Object replayLock = new Object();
+    // How long seats offered to a waitlisted party are held for them to confirm
+    private static final long OFFER_HOLD_MS = Long.getLong("mtba.waitlist.offerMs", 15 * 60_000L);
+    // Offers waitlisted parties released seats, off the event thread; also lapses unconfirmed offers
+    private final ScheduledExecutorService waitlistMatcher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("waitlist-matcher-", 0).factory());
+    // Shows with seats released since the matcher last looked at them
+    private final Set<ShowRef> showsToMatch = ConcurrentHashMap.newKeySet();
+    // Links new orders to their customers (see linkCustomers), off the booking path
+    private final ScheduledExecutorService customerLinker = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("customer-linker-", 0).factory());
+    // Shards with orders waiting for the linker
+    private final Set<Integer> shardsToLink = ConcurrentHashMap.newKeySet();
+    // Picks up pricing rules changed at another terminal, so quotes never read them from the database
+    private static final long PRICING_REFRESH_MS = Long.getLong("mtba.pricing.refreshMs", 5000);
+    private final ScheduledExecutorService pricingRefresher = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("pricing-refresh-", 0).factory());
 
     public DatabaseManager() {
         initDatabase();
+        waitlistMatcher.scheduleWithFixedDelay(this::matchWaitlists, 1, 30, TimeUnit.SECONDS);
+        pricingRefresher.scheduleWithFixedDelay(this::reloadPricingRules, PRICING_REFRESH_MS, PRICING_REFRESH_MS,
+                TimeUnit.MILLISECONDS);
     }
 
     private void initDatabase() {
         try {
             Class.forName("org.sqlite.JDBC");
-            conn = DriverManager.getConnection("jdbc:sqlite:movie_booking.db");
+            conn = DriverManager.getConnection("jdbc:sqlite:" + ShardRouter.catalogPath());
             System.out.println("Database connected successfully!");
             createTables();
+            pricingEngine.setRules(loadPricingRules(conn));
+            openShards();
+            snapshotReader = new SnapshotReader(shards);
             insertSampleData();
+            hashPlaintextPasswords();
         } catch (Exception e) {
             System.err.println("Database initialization error: " + e.getMessage());
             e.printStackTrace();
@@ -41,6 +155,107 @@ public class DatabaseManager {
                 "location TEXT, " +
                 "total_seats INTEGER)");
 
+        // Shows: which movie plays on which screen of a theatre, and when
+        stmt.execute("CREATE TABLE IF NOT EXISTS shows (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "movie_id INTEGER NOT NULL, " +
+                "theatre_id INTEGER NOT NULL, " +
+                "screen INTEGER NOT NULL DEFAULT 1, " +
+                "show_date TEXT NOT NULL, " +
+                "show_time TEXT NOT NULL, " +
+                "UNIQUE(theatre_id, screen, show_date, show_time), " +
+                "FOREIGN KEY(movie_id) REFERENCES movies(id), " +
+                "FOREIGN KEY(theatre_id) REFERENCES theatres(id))");
+        // Show dates for a movie at a theatre, read by the booking screen's date list
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_shows_movie_theatre ON shows(movie_id, theatre_id, show_date)");
+        // Screens the schedule generator fills with shows
+        addColumnIfMissing(conn, "theatres", "screens", "INTEGER NOT NULL DEFAULT 1");
+
+        // Number of shards the bookings are currently spread over (see ShardRouter)
+        stmt.execute("CREATE TABLE IF NOT EXISTS shard_info (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                "shard_count INTEGER NOT NULL)");
+
+        // Pricing rules as set in the admin panel, one row per PricingRules setting; none means the defaults
+        stmt.execute("CREATE TABLE IF NOT EXISTS pricing_rules (" +
+                "name TEXT PRIMARY KEY, " +
+                "value TEXT NOT NULL)");
+
+        // Export progress: the last booking ID and status change each incremental export has written
+        stmt.execute("CREATE TABLE IF NOT EXISTS export_watermarks (" +
+                "name TEXT PRIMARY KEY, " +
+                "last_booking_id INTEGER NOT NULL, " +
+                "exported_at TIMESTAMP)");
+        addColumnIfMissing(conn, "export_watermarks", "last_status_seq", "INTEGER NOT NULL DEFAULT 0");
+
+        // Orders that got a new ID when their theatre moved to another shard, so the
+        // number on an earlier receipt still finds the order
+        stmt.execute("CREATE TABLE IF NOT EXISTS moved_orders (" +
+                "old_id INTEGER PRIMARY KEY, " +
+                "new_id INTEGER NOT NULL)");
+
+        // Waitlist for sold-out shows. Kept with the catalog rather than in the theatre's
+        // shard, so it never has to move when shards are rebalanced; shard connections
+        // see it through the attached catalog.
+        stmt.execute("CREATE TABLE IF NOT EXISTS waitlist (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "movie_id INTEGER NOT NULL, " +
+                "theatre_id INTEGER NOT NULL, " +
+                "show_date TEXT NOT NULL, " +
+                "party_size INTEGER NOT NULL CHECK (party_size > 0), " +
+                "customer_name TEXT NOT NULL, " +
+                "phone TEXT NOT NULL, " +
+                "status TEXT NOT NULL DEFAULT 'WAITING', " + // 'WAITING', 'OFFERED', 'SEATED', 'EXPIRED' or 'REMOVED'
+                "order_id INTEGER, " +
+                "joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY(movie_id) REFERENCES movies(id), " +
+                "FOREIGN KEY(theatre_id) REFERENCES theatres(id))");
+        if (addColumnIfMissing(conn, "waitlist", "show_id", "INTEGER NOT NULL DEFAULT 0")) {
+            assignShowIds(conn, "waitlist", "show_date");
+        }
+        // Occupancy when the party joined, which their offer is priced at (see offerFromWaitlist)
+        addColumnIfMissing(conn, "waitlist", "quoted_occupancy", "REAL");
+        // An open offer: the seats held for the party, their prices and when the hold lapses (epoch ms)
+        addColumnIfMissing(conn, "waitlist", "offer_seats", "TEXT");
+        addColumnIfMissing(conn, "waitlist", "offer_prices", "TEXT");
+        addColumnIfMissing(conn, "waitlist", "offer_expires", "INTEGER");
+        // One FIFO queue per party size: within a show and size, the lowest ID is next in line
+        stmt.execute("DROP INDEX IF EXISTS idx_waitlist_queue");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_waitlist_show_queue " +
+                "ON waitlist(movie_id, theatre_id, show_date, show_id, party_size, id) WHERE status = 'WAITING'");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_waitlist_offers " +
+                "ON waitlist(movie_id, theatre_id, show_date, show_id) WHERE status = 'OFFERED'");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_waitlist_offer_expiry " +
+                "ON waitlist(offer_expires) WHERE status = 'OFFERED'");
+
+        // Customers by phone number, so repeat customers need not give their details again
+        stmt.execute("CREATE TABLE IF NOT EXISTS customers (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "phone TEXT NOT NULL UNIQUE, " +
+                "name TEXT NOT NULL, " +
+                "email TEXT, " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        normalizeStoredPhones(conn, "customers");
+        normalizeStoredPhones(conn, "waitlist");
+
+        // 4. Users/Admin table (NEW)
+        stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
+                "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "username TEXT NOT NULL UNIQUE, " +
+                "password TEXT NOT NULL, " + // PBKDF2 hash, see PasswordHasher
+                "role TEXT NOT NULL)"); // 'admin' or 'user'
+
+        stmt.close();
+
+        // The main file is also shard 0
+        createShardTables(conn);
+        System.out.println("Tables created successfully!");
+    }
+
+    // Tables that are kept per shard (in the main file they sit next to the catalog)
+    private void createShardTables(Connection shard) throws SQLException {
+        Statement stmt = shard.createStatement();
+
         // 3. Bookings table (Unchanged)
         stmt.execute("CREATE TABLE IF NOT EXISTS bookings (" +
                 "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
@@ -54,15 +269,543 @@ public class DatabaseManager {
                 "FOREIGN KEY(movie_id) REFERENCES movies(id), " +
                 "FOREIGN KEY(theatre_id) REFERENCES theatres(id))");
 
-        // 4. Users/Admin table (NEW)
-        stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
+        // Orders: one row per purchase, seat rows in bookings reference it
+        stmt.execute("CREATE TABLE IF NOT EXISTS orders (" +
                 "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "username TEXT NOT NULL UNIQUE, " +
-                "password TEXT NOT NULL, " + // Note: In a real app, hash and salt the password!
-                "role TEXT NOT NULL)"); // 'admin' or 'user'
+                "customer_name TEXT NOT NULL, " +
+                "phone TEXT NOT NULL, " +
+                "total REAL NOT NULL DEFAULT 0, " +
+                "status TEXT NOT NULL DEFAULT 'BOOKED', " +
+                "order_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_orders_phone ON orders(phone)");
+
+        // Per-show tables from before shows had IDs are keyed by date only; they are
+        // recreated empty (the rollups are rebuilt below, versions start again at 0)
+        for (String table : new String[]{"show_rollup", "show_versions"}) {
+            if (!hasColumn(shard, table, "show_id")) {
+                stmt.execute("DROP TABLE IF EXISTS main." + table);
+            }
+        }
+
+        // Analytics rollups, kept up to date by the booking and cancellation paths
+        stmt.execute("CREATE TABLE IF NOT EXISTS show_rollup (" +
+                "movie_id INTEGER NOT NULL, " +
+                "theatre_id INTEGER NOT NULL, " +
+                "show_date TEXT NOT NULL, " +
+                "show_id INTEGER NOT NULL DEFAULT 0, " +
+                "seats_sold INTEGER NOT NULL DEFAULT 0, " +
+                "revenue REAL NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY(movie_id, theatre_id, show_date, show_id))");
+        stmt.execute("CREATE TABLE IF NOT EXISTS daily_rollup (" +
+                "show_date TEXT PRIMARY KEY, " +
+                "seats_sold INTEGER NOT NULL DEFAULT 0, " +
+                "revenue REAL NOT NULL DEFAULT 0)");
+        stmt.execute("CREATE TABLE IF NOT EXISTS movie_rollup (" +
+                "movie_id INTEGER PRIMARY KEY, " +
+                "seats_sold INTEGER NOT NULL DEFAULT 0, " +
+                "revenue REAL NOT NULL DEFAULT 0)");
+
+        // Per-show version, bumped by every booking and cancellation. Terminals sharing
+        // the database file use it to detect that their cached seat map is stale.
+        stmt.execute("CREATE TABLE IF NOT EXISTS show_versions (" +
+                "movie_id INTEGER NOT NULL, " +
+                "theatre_id INTEGER NOT NULL, " +
+                "show_date TEXT NOT NULL, " +
+                "show_id INTEGER NOT NULL DEFAULT 0, " +
+                "version INTEGER NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY(movie_id, theatre_id, show_date, show_id))");
 
         stmt.close();
-        System.out.println("Tables created successfully!");
+
+        // Columns added after the first release; older database files need them appended
+        addColumnIfMissing(shard, "bookings", "price", "REAL");
+        addColumnIfMissing(shard, "bookings", "status", "TEXT NOT NULL DEFAULT 'BOOKED'");
+        addColumnIfMissing(shard, "bookings", "cancelled_at", "TIMESTAMP");
+        // Orders the shard's status changes, for the incremental export (see BookingExporter).
+        // Cancellations from before it existed are numbered so the next export sends them.
+        if (addColumnIfMissing(shard, "bookings", "status_seq", "INTEGER")) {
+            try (Statement seqStmt = shard.createStatement()) {
+                seqStmt.executeUpdate("UPDATE main.bookings SET status_seq = id WHERE status = 'CANCELLED'");
+            }
+        }
+        addColumnIfMissing(shard, "bookings", "order_id", "INTEGER REFERENCES orders(id)");
+        // The show (see ShowTime); 0 for a theatre's all-day show
+        if (addColumnIfMissing(shard, "bookings", "show_id", "INTEGER NOT NULL DEFAULT 0")) {
+            assignShowIds(shard, "bookings", "booking_date");
+        }
+        // Customers live in the catalog, so this cannot be a foreign key on other shards.
+        // Null until linkCustomers() has run for the order.
+        addColumnIfMissing(shard, "orders", "customer_id", "INTEGER");
+        // The email given with the order, for linkCustomers() to keep on the customer
+        addColumnIfMissing(shard, "orders", "email", "TEXT");
+        // The offline journal entry an order was replayed from (sequence number and time taken), if any
+        addColumnIfMissing(shard, "orders", "journal_seq", "INTEGER");
+        addColumnIfMissing(shard, "orders", "journal_taken_at", "INTEGER");
+
+        // Seat lookups only ever want live bookings, so cancelled rows are left out of the index
+        try (Statement indexStmt = shard.createStatement()) {
+            indexStmt.execute("DROP INDEX IF EXISTS main.idx_bookings_show_active");
+            indexStmt.execute("CREATE INDEX IF NOT EXISTS idx_bookings_show_seats " +
+                    "ON bookings(movie_id, theatre_id, booking_date, show_id, seat_number) " +
+                    "WHERE status = 'BOOKED'");
+            indexStmt.execute("CREATE INDEX IF NOT EXISTS idx_bookings_order ON bookings(order_id)");
+            indexStmt.execute("CREATE INDEX IF NOT EXISTS idx_bookings_status_seq ON bookings(status_seq) " +
+                    "WHERE status_seq IS NOT NULL");
+            // A customer's orders, newest first, straight from the index
+            indexStmt.execute("CREATE INDEX IF NOT EXISTS idx_orders_customer ON orders(customer_id, id)");
+            indexStmt.execute("CREATE INDEX IF NOT EXISTS idx_orders_unlinked ON orders(id) " +
+                    "WHERE customer_id IS NULL AND phone <> ''");
+            // A journal entry is booked at most once, even if the journal could not record the replay
+            indexStmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_orders_journal " +
+                    "ON orders(journal_seq, journal_taken_at) WHERE journal_seq IS NOT NULL");
+        }
+        migrateLegacyBookingsToOrders(shard);
+        normalizeStoredPhones(shard, "orders");
+        int linked = linkCustomers(shard);
+        if (linked > 0) {
+            System.out.println("Linked " + linked + " order(s) to customers");
+        }
+        initRollups(shard);
+    }
+
+    // --- SHARDS ---
+
+    // Opens the booking shards, first moving bookings over if the shard count has changed
+    private void openShards() throws SQLException {
+        int configured = ShardRouter.configuredShardCount();
+        int recorded = readShardCount();
+        shards = new ShardRouter(conn, configured);
+        for (int k = 1; k < configured; k++) {
+            prepareShard(shards.get(k), k);
+        }
+        if (recorded != configured) {
+            rebalanceShards(recorded);
+            saveShardCount(configured);
+        }
+        if (configured > 1) {
+            System.out.println("Bookings are sharded over " + configured + " database files");
+        }
+    }
+
+    private void prepareShard(Connection shard, int index) throws SQLException {
+        createShardTables(shard);
+        // Start the shard's IDs at the bottom of its own range so they never clash with another shard's
+        try (PreparedStatement pstmt = shard.prepareStatement(
+                "INSERT INTO sqlite_sequence (name, seq) SELECT ?, ? " +
+                "WHERE NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = ?)")) {
+            for (String table : new String[]{"orders", "bookings"}) {
+                pstmt.setString(1, table);
+                pstmt.setLong(2, index * ShardRouter.ID_RANGE);
+                pstmt.setString(3, table);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    // Database files created before sharding hold everything in one file
+    private int readShardCount() throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT shard_count FROM shard_info WHERE id = 1")) {
+            return rs.next() ? rs.getInt(1) : 1;
+        }
+    }
+
+    private void saveShardCount(int count) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO shard_info (id, shard_count) VALUES (1, ?) " +
+                "ON CONFLICT(id) DO UPDATE SET shard_count = excluded.shard_count")) {
+            pstmt.setInt(1, count);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Moves each theatre's orders, bookings and show versions to the shard the
+     * current shard count assigns it to. Shards beyond the current count (when
+     * it was lowered) are emptied. Moved rows get new IDs from the destination
+     * shard's range, so an incremental export writes them again. Order numbers
+     * change too: seated waitlist entries are pointed at the new number, and
+     * moved_orders maps the old one, so getOrder() and cancelOrder() still
+     * accept the number printed on a receipt.
+     */
+    private void rebalanceShards(int previousCount) throws SQLException {
+        int moved = 0;
+        int count = Math.max(previousCount, shards.getShardCount());
+        for (int source = 0; source < count; source++) {
+            boolean retired = source >= shards.getShardCount();
+            Connection shard = retired ? ShardRouter.open(source) : shards.get(source);
+            try {
+                if (retired) {
+                    prepareShard(shard, source);
+                }
+                for (int theatreId : theatresIn(shard)) {
+                    int target = shards.shardOf(theatreId);
+                    if (target != source) {
+                        moveTheatre(shard, source, target, theatreId);
+                        moved++;
+                    }
+                }
+            } finally {
+                if (retired) {
+                    shard.close();
+                }
+            }
+        }
+        for (Connection shard : shards.all()) {
+            rebuildRollups(shard);
+        }
+        System.out.println("Resharded bookings from " + previousCount + " to " + shards.getShardCount() +
+                " shard(s), moved " + moved + " theatre(s)");
+    }
+
+    private ArrayList<Integer> theatresIn(Connection shard) throws SQLException {
+        ArrayList<Integer> theatreIds = new ArrayList<>();
+        try (Statement stmt = shard.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT theatre_id FROM bookings WHERE theatre_id IS NOT NULL " +
+                     "UNION SELECT theatre_id FROM show_versions")) {
+            while (rs.next()) {
+                theatreIds.add(rs.getInt(1));
+            }
+        }
+        return theatreIds;
+    }
+
+    // Copies one theatre into the target shard and deletes it from the source, in one transaction over both files
+    private void moveTheatre(Connection shard, int source, int target, int theatreId) throws SQLException {
+        // Shard files already have the main file attached as "catalog"
+        String dest = target == 0 && source > 0 ? "catalog" : "dest";
+        if (dest.equals("dest")) {
+            try (Statement stmt = shard.createStatement()) {
+                stmt.execute("ATTACH DATABASE '" + ShardRouter.path(target) + "' AS dest");
+            }
+        }
+        shard.setAutoCommit(false);
+        try (PreparedStatement selectOrders = shard.prepareStatement(
+                     "SELECT DISTINCT order_id FROM main.bookings WHERE theatre_id = ? AND order_id IS NOT NULL ORDER BY order_id");
+             PreparedStatement copyOrder = shard.prepareStatement(
+                     "INSERT INTO " + dest + ".orders (customer_id, customer_name, phone, email, total, status, " +
+                     "order_time, journal_seq, journal_taken_at) " +
+                     "SELECT customer_id, customer_name, phone, email, total, status, order_time, journal_seq, " +
+                     "journal_taken_at FROM main.orders WHERE id = ?");
+             PreparedStatement copySeats = shard.prepareStatement(
+                     "INSERT INTO " + dest + ".bookings (order_id, movie_id, theatre_id, booking_date, show_id, " +
+                     "seat_number, booking_time, price, status, cancelled_at) " +
+                     "SELECT ?, movie_id, theatre_id, booking_date, show_id, seat_number, booking_time, price, " +
+                     "status, cancelled_at FROM main.bookings WHERE order_id = ?");
+             PreparedStatement relinkWaitlist = shard.prepareStatement(
+                     "UPDATE waitlist SET order_id = ? WHERE order_id = ?");
+             PreparedStatement redirectMoved = shard.prepareStatement(
+                     "UPDATE moved_orders SET new_id = ? WHERE new_id = ?");
+             PreparedStatement recordMove = shard.prepareStatement(
+                     "INSERT OR REPLACE INTO moved_orders (old_id, new_id) VALUES (?, ?)");
+             PreparedStatement deleteSeats = shard.prepareStatement(
+                     "DELETE FROM main.bookings WHERE order_id = ?");
+             PreparedStatement deleteOrder = shard.prepareStatement(
+                     "DELETE FROM main.orders WHERE id = ?");
+             PreparedStatement copyVersions = shard.prepareStatement(
+                     "INSERT OR REPLACE INTO " + dest + ".show_versions " +
+                     "(movie_id, theatre_id, show_date, show_id, version) " +
+                     "SELECT movie_id, theatre_id, show_date, show_id, version FROM main.show_versions " +
+                     "WHERE theatre_id = ?");
+             PreparedStatement deleteVersions = shard.prepareStatement(
+                     "DELETE FROM main.show_versions WHERE theatre_id = ?")) {
+
+            ArrayList<Integer> orderIds = new ArrayList<>();
+            selectOrders.setInt(1, theatreId);
+            ResultSet rs = selectOrders.executeQuery();
+            while (rs.next()) {
+                orderIds.add(rs.getInt(1));
+            }
+            rs.close();
+
+            for (int orderId : orderIds) {
+                copyOrder.setInt(1, orderId);
+                copyOrder.executeUpdate();
+                int newOrderId = lastInsertId(shard);
+                copySeats.setInt(1, newOrderId);
+                copySeats.setInt(2, orderId);
+                copySeats.executeUpdate();
+                // waitlist and moved_orders live in the catalog, which every shard connection can see
+                relinkWaitlist.setInt(1, newOrderId);
+                relinkWaitlist.setInt(2, orderId);
+                relinkWaitlist.executeUpdate();
+                redirectMoved.setInt(1, newOrderId);
+                redirectMoved.setInt(2, orderId);
+                redirectMoved.executeUpdate();
+                recordMove.setInt(1, orderId);
+                recordMove.setInt(2, newOrderId);
+                recordMove.executeUpdate();
+                deleteSeats.setInt(1, orderId);
+                deleteSeats.executeUpdate();
+                deleteOrder.setInt(1, orderId);
+                deleteOrder.executeUpdate();
+            }
+            copyVersions.setInt(1, theatreId);
+            copyVersions.executeUpdate();
+            deleteVersions.setInt(1, theatreId);
+            deleteVersions.executeUpdate();
+            shard.commit();
+        } catch (SQLException e) {
+            shard.rollback();
+            throw e;
+        } finally {
+            shard.setAutoCommit(true);
+            if (dest.equals("dest")) {
+                try (Statement stmt = shard.createStatement()) {
+                    stmt.execute("DETACH DATABASE dest");
+                }
+            }
+        }
+    }
+
+    // True if the column had to be added
+    private boolean addColumnIfMissing(Connection shard, String table, String column, String definition)
+            throws SQLException {
+        if (hasColumn(shard, table, column)) {
+            return false;
+        }
+        try (Statement stmt = shard.createStatement()) {
+            stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+        System.out.println("Added column " + table + "." + column);
+        return true;
+    }
+
+    // False also if the table does not exist. Only looks in the file itself, not the attached catalog.
+    private boolean hasColumn(Connection shard, String table, String column) throws SQLException {
+        try (Statement stmt = shard.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA main.table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // Rows written before bookings were kept per show: where the movie played only once at
+    // the theatre that day the row belongs to that show, otherwise it stays with the all-day show
+    private void assignShowIds(Connection shard, String table, String dateColumn) throws SQLException {
+        String sameDay = "FROM shows s WHERE s.movie_id = " + table + ".movie_id " +
+                "AND s.theatre_id = " + table + ".theatre_id AND s.show_date = " + table + "." + dateColumn;
+        try (Statement stmt = shard.createStatement()) {
+            int assigned = stmt.executeUpdate("UPDATE " + table + " SET show_id = (SELECT MIN(s.id) " + sameDay + ") " +
+                    "WHERE (SELECT COUNT(*) " + sameDay + ") = 1");
+            if (assigned > 0) {
+                System.out.println("Assigned " + assigned + " " + table + " row(s) to their show");
+            }
+        }
+    }
+
+    // Bookings made before orders existed carry the customer on every seat row.
+    // Group them into one order per customer and show, then drop the copies.
+    private void migrateLegacyBookingsToOrders(Connection shard) throws SQLException {
+        int migrated = 0;
+        shard.setAutoCommit(false);
+        try (Statement select = shard.createStatement();
+             PreparedStatement insertOrder = shard.prepareStatement(
+                     "INSERT INTO orders (customer_name, phone, total, status, order_time) VALUES (?, ?, ?, ?, ?)");
+             PreparedStatement linkSeats = shard.prepareStatement(
+                     "UPDATE bookings SET order_id = ?, customer_name = NULL, phone = NULL " +
+                     "WHERE order_id IS NULL AND customer_name IS ? AND phone IS ? " +
+                     "AND movie_id = ? AND theatre_id = ? AND booking_date = ?")) {
+
+            ResultSet rs = select.executeQuery(
+                    "SELECT customer_name, phone, movie_id, theatre_id, booking_date, " +
+                    "SUM(COALESCE(price, 0)) AS total, MIN(booking_time) AS order_time, " +
+                    "MAX(CASE WHEN status = 'BOOKED' THEN 1 ELSE 0 END) AS active " +
+                    "FROM bookings WHERE order_id IS NULL " +
+                    "GROUP BY customer_name, phone, movie_id, theatre_id, booking_date");
+            while (rs.next()) {
+                String name = rs.getString("customer_name");
+                String phone = rs.getString("phone");
+                insertOrder.setString(1, name == null ? "" : name);
+                insertOrder.setString(2, phone == null ? "" : phone);
+                insertOrder.setDouble(3, rs.getDouble("total"));
+                insertOrder.setString(4, rs.getInt("active") == 1 ? "BOOKED" : "CANCELLED");
+                insertOrder.setString(5, rs.getString("order_time"));
+                insertOrder.executeUpdate();
+                int orderId = lastInsertId(shard);
+
+                linkSeats.setInt(1, orderId);
+                linkSeats.setString(2, name);
+                linkSeats.setString(3, phone);
+                linkSeats.setInt(4, rs.getInt("movie_id"));
+                linkSeats.setInt(5, rs.getInt("theatre_id"));
+                linkSeats.setString(6, rs.getString("booking_date"));
+                linkSeats.executeUpdate();
+                migrated++;
+            }
+            rs.close();
+            shard.commit();
+        } catch (SQLException e) {
+            shard.rollback();
+            throw e;
+        } finally {
+            shard.setAutoCommit(true);
+        }
+        if (migrated > 0) {
+            System.out.println("Grouped legacy bookings into " + migrated + " order(s)");
+        }
+    }
+
+    // Rows saved before phone numbers were kept as digits only. Customers whose
+    // number is already on file in digits keep their old row as it is.
+    private void normalizeStoredPhones(Connection db, String table) throws SQLException {
+        ArrayList<String> phones = new ArrayList<>();
+        try (Statement stmt = db.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT DISTINCT phone FROM main." + table +
+                     " WHERE phone GLOB '*[^0-9]*'")) {
+            while (rs.next()) {
+                phones.add(rs.getString(1));
+            }
+        }
+        try (PreparedStatement update = db.prepareStatement(
+                "UPDATE OR IGNORE main." + table + " SET phone = ? WHERE phone = ?")) {
+            for (String phone : phones) {
+                update.setString(1, normalizePhone(phone));
+                update.setString(2, phone);
+                update.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Creates or updates the customer of every order on the shard that is
+     * not linked to one yet, oldest order first (so the latest name wins and
+     * an email is only ever added), and links the orders, in one transaction.
+     * Bookings leave this to the background linker, so they never write to
+     * the catalog; only orders that committed get here. Returns the number
+     * of orders linked.
+     */
+    private int linkCustomers(Connection shard) throws SQLException {
+        ArrayList<Object[]> unlinked = new ArrayList<>();
+        try (Statement stmt = shard.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, customer_name, phone, email FROM main.orders " +
+                     "WHERE customer_id IS NULL AND phone <> '' ORDER BY id")) {
+            while (rs.next()) {
+                unlinked.add(new Object[]{rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)});
+            }
+        }
+        if (unlinked.isEmpty()) {
+            return 0;
+        }
+        shard.setAutoCommit(false);
+        try (PreparedStatement upsert = shard.prepareStatement(
+                     "INSERT INTO customers (phone, name, email) VALUES (?, ?, ?) " +
+                     "ON CONFLICT(phone) DO UPDATE SET name = excluded.name, " +
+                     "email = COALESCE(excluded.email, customers.email)");
+             PreparedStatement link = shard.prepareStatement(
+                     "UPDATE main.orders SET customer_id = (SELECT id FROM customers WHERE phone = ?) WHERE id = ?")) {
+            for (Object[] order : unlinked) {
+                upsert.setString(1, (String) order[2]);
+                upsert.setString(2, (String) order[1]);
+                upsert.setString(3, (String) order[3]);
+                upsert.executeUpdate();
+                link.setString(1, (String) order[2]);
+                link.setInt(2, (Integer) order[0]);
+                link.executeUpdate();
+            }
+            shard.commit();
+        } catch (SQLException e) {
+            shard.rollback();
+            throw e;
+        } finally {
+            shard.setAutoCommit(true);
+        }
+        // Reloaded with the new details on next use
+        synchronized (recentCustomers) {
+            for (Object[] order : unlinked) {
+                recentCustomers.remove((String) order[2]);
+            }
+        }
+        return unlinked.size();
+    }
+
+    // Builds the rollups from existing bookings the first time they are needed
+    private void initRollups(Connection shard) throws SQLException {
+        try (Statement stmt = shard.createStatement()) {
+            ResultSet rs = stmt.executeQuery(
+                    "SELECT (SELECT COUNT(*) FROM show_rollup) = 0 " +
+                    "AND EXISTS (SELECT 1 FROM bookings WHERE status = 'BOOKED')");
+            boolean needed = rs.getBoolean(1);
+            rs.close();
+            if (needed) {
+                rebuildRollups(shard);
+            }
+        }
+    }
+
+    /**
+     * Recomputes all rollup tables from the bookings table. Only needed after
+     * bookings were changed outside this class; normal bookings and
+     * cancellations keep the rollups current. Each shard has its own
+     * rollups for the theatres it holds.
+     */
+    public void rebuildRollups() throws SQLException {
+        for (Connection shard : shards.all()) {
+            rebuildRollups(shard);
+        }
+        System.out.println("Analytics rollups rebuilt");
+    }
+
+    private void rebuildRollups(Connection shard) throws SQLException {
+        shard.setAutoCommit(false);
+        try (Statement stmt = shard.createStatement()) {
+            stmt.execute("DELETE FROM show_rollup");
+            stmt.execute("DELETE FROM daily_rollup");
+            stmt.execute("DELETE FROM movie_rollup");
+            stmt.execute("INSERT INTO show_rollup (movie_id, theatre_id, show_date, show_id, seats_sold, revenue) " +
+                    "SELECT movie_id, theatre_id, booking_date, show_id, COUNT(*), SUM(COALESCE(price, 0)) " +
+                    "FROM bookings WHERE status = 'BOOKED' GROUP BY movie_id, theatre_id, booking_date, show_id");
+            stmt.execute("INSERT INTO daily_rollup (show_date, seats_sold, revenue) " +
+                    "SELECT show_date, SUM(seats_sold), SUM(revenue) FROM show_rollup GROUP BY show_date");
+            stmt.execute("INSERT INTO movie_rollup (movie_id, seats_sold, revenue) " +
+                    "SELECT movie_id, SUM(seats_sold), SUM(revenue) FROM show_rollup GROUP BY movie_id");
+            shard.commit();
+        } catch (SQLException e) {
+            shard.rollback();
+            throw e;
+        } finally {
+            shard.setAutoCommit(true);
+        }
+    }
+
+    // Adds (or with negative values removes) sold seats and revenue; runs inside the caller's transaction
+    private void updateRollups(Connection shard, ShowRef show, int seats, double revenue) throws SQLException {
+        try (PreparedStatement showStmt = shard.prepareStatement(
+                     "INSERT INTO show_rollup (movie_id, theatre_id, show_date, show_id, seats_sold, revenue) " +
+                     "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT(movie_id, theatre_id, show_date, show_id) DO UPDATE SET " +
+                     "seats_sold = seats_sold + excluded.seats_sold, revenue = revenue + excluded.revenue");
+             PreparedStatement dayStmt = shard.prepareStatement(
+                     "INSERT INTO daily_rollup (show_date, seats_sold, revenue) VALUES (?, ?, ?) " +
+                     "ON CONFLICT(show_date) DO UPDATE SET " +
+                     "seats_sold = seats_sold + excluded.seats_sold, revenue = revenue + excluded.revenue");
+             PreparedStatement movieStmt = shard.prepareStatement(
+                     "INSERT INTO movie_rollup (movie_id, seats_sold, revenue) VALUES (?, ?, ?) " +
+                     "ON CONFLICT(movie_id) DO UPDATE SET " +
+                     "seats_sold = seats_sold + excluded.seats_sold, revenue = revenue + excluded.revenue")) {
+
+            showStmt.setInt(1, show.movieId());
+            showStmt.setInt(2, show.theatreId());
+            showStmt.setString(3, show.date());
+            showStmt.setInt(4, show.showId());
+            showStmt.setInt(5, seats);
+            showStmt.setDouble(6, revenue);
+            showStmt.executeUpdate();
+
+            dayStmt.setString(1, show.date());
+            dayStmt.setInt(2, seats);
+            dayStmt.setDouble(3, revenue);
+            dayStmt.executeUpdate();
+
+            movieStmt.setInt(1, show.movieId());
+            movieStmt.setInt(2, seats);
+            movieStmt.setDouble(3, revenue);
+            movieStmt.executeUpdate();
+        }
     }
 
     private void insertSampleData() throws SQLException {
@@ -134,13 +877,13 @@ public class DatabaseManager {
             
             // ADMIN: username='admin', password='1234' (Matches LoginFrame stub)
             pstmt.setString(1, "admin");
-            pstmt.setString(2, "1234"); 
+            pstmt.setString(2, passwordHasher.hash("1234".toCharArray()));
             pstmt.setString(3, "admin");
             pstmt.executeUpdate();
 
             // Example USER: username='user', password='password'
             pstmt.setString(1, "user");
-            pstmt.setString(2, "password"); 
+            pstmt.setString(2, passwordHasher.hash("password".toCharArray()));
             pstmt.setString(3, "user");
             pstmt.executeUpdate();
 
@@ -149,23 +892,97 @@ public class DatabaseManager {
         }
     }
 
+    // Databases created before passwords were hashed still hold them in plain text
+    private void hashPlaintextPasswords() throws SQLException {
+        ArrayList<String[]> plaintext = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, password FROM users")) {
+            while (rs.next()) {
+                if (!PasswordHasher.isHashed(rs.getString("password"))) {
+                    plaintext.add(new String[]{rs.getString("id"), rs.getString("password")});
+                }
+            }
+        }
+        if (plaintext.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE users SET password = ? WHERE id = ?")) {
+            for (String[] user : plaintext) {
+                pstmt.setString(1, passwordHasher.hash(user[1].toCharArray()));
+                pstmt.setInt(2, Integer.parseInt(user[0]));
+                pstmt.executeUpdate();
+            }
+        }
+        System.out.println("Hashed " + plaintext.size() + " plain-text password(s)");
+    }
+
     // --- NEW ADMIN FUNCTIONALITY ---
 
     public boolean adminLogin(String username, String password) {
+        return "admin".equalsIgnoreCase(authenticate(username, password));
+    }
+
+    /**
+     * Checks the credentials and returns the user's role ("admin" or "user"),
+     * or null if they are wrong or the username is locked out. Every attempt
+     * that gets past the lockout check costs one PBKDF2 hash, whether or not
+     * the username exists.
+     */
+    public String authenticate(String username, String password) {
+        if (loginThrottle.remainingLockout(username) > 0) {
+            return null;
+        }
+        Credential credential = credentialCache.get(username);
+        if (credential == null) {
+            credential = loadCredential(username);
+            if (credential != null) {
+                credentialCache.put(username, credential);
+            }
+        }
+
+        char[] chars = password.toCharArray();
+        boolean valid = passwordHasher.verify(chars, credential != null ? credential.hash() : dummyHash)
+                && credential != null;
+        if (!valid) {
+            loginThrottle.recordFailure(username);
+            return null;
+        }
+        loginThrottle.recordSuccess(username);
+        if (passwordHasher.needsRehash(credential.hash())) {
+            updatePasswordHash(username, passwordHasher.hash(chars), credential.role());
+        }
+        return credential.role();
+    }
+
+    // Milliseconds until the username may try to log in again, 0 if it is not locked
+    public long getLoginLockoutRemaining(String username) {
+        return loginThrottle.remainingLockout(username);
+    }
+
+    private Credential loadCredential(String username) {
         try (PreparedStatement pstmt = conn.prepareStatement(
-                "SELECT role FROM users WHERE username = ? AND password = ?")) {
-            
+                "SELECT password, role FROM users WHERE username = ?")) {
             pstmt.setString(1, username);
-            pstmt.setString(2, password);
-
             ResultSet rs = pstmt.executeQuery();
-            if (rs.next() && "admin".equalsIgnoreCase(rs.getString("role"))) {
-                return true;
-            }
+            Credential credential = rs.next() ? new Credential(rs.getString("password"), rs.getString("role")) : null;
+            rs.close();
+            return credential;
         } catch (SQLException e) {
-            System.err.println("Admin login error: " + e.getMessage());
+            System.err.println("Login error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void updatePasswordHash(String username, String hash, String role) {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE users SET password = ? WHERE username = ?")) {
+            pstmt.setString(1, hash);
+            pstmt.setString(2, username);
+            pstmt.executeUpdate();
+            credentialCache.put(username, new Credential(hash, role));
+        } catch (SQLException e) {
+            System.err.println("Error upgrading password hash: " + e.getMessage());
         }
-        return false;
     }
 
     public boolean addMovie(String movieTitle, String genre, int duration, String rating) {
@@ -178,6 +995,8 @@ public class DatabaseManager {
             pstmt.setString(4, rating);
             pstmt.executeUpdate();
             System.out.println("Movie added: " + movieTitle);
+            dropMovieIndex();
+            snapshotReader.invalidate();
             return true;
         } catch (SQLException e) {
             System.err.println("Error adding movie: " + e.getMessage());
@@ -185,15 +1004,17 @@ public class DatabaseManager {
         }
     }
 
-    public boolean addTheatre(String name, String location, int totalSeats) {
+    public boolean addTheatre(String name, String location, int totalSeats, int screens) {
         try (PreparedStatement pstmt = conn.prepareStatement(
-                "INSERT INTO theatres (name, location, total_seats) VALUES (?, ?, ?)")) {
+                "INSERT INTO theatres (name, location, total_seats, screens) VALUES (?, ?, ?, ?)")) {
             
             pstmt.setString(1, name);
             pstmt.setString(2, location);
             pstmt.setInt(3, totalSeats);
+            pstmt.setInt(4, screens);
             pstmt.executeUpdate();
             System.out.println("Theatre added: " + name);
+            snapshotReader.invalidate();
             return true;
         } catch (SQLException e) {
             System.err.println("Error adding theatre: " + e.getMessage());
@@ -201,145 +1022,1893 @@ public class DatabaseManager {
         }
     }
     
-    // Note: The previous UI design didn't explicitly select movie/theatre IDs for a show. 
-    // Since adding a 'show' is complex (needs linking), the current DB design is fine 
-    // as it assumes the booking date/time is implicit per movie/theatre combination. 
-    // No dedicated 'shows' table is needed *yet*.
-
-    // --- EXISTING USER FUNCTIONALITY (Unchanged, for completeness) ---
+    // --- SCHEDULE ---
 
-    public ArrayList<String> getMovies() {
-        ArrayList<String> movies = new ArrayList<>();
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT name, genre, duration FROM movies ORDER BY name")) {
-            
-            while (rs.next()) {
-                movies.add(rs.getString("name") + " (" + rs.getString("genre") + ", " + 
-                            rs.getInt("duration") + " min)");
+    /**
+     * Fills the shows table for the given number of days from "from" on,
+     * every screen of every theatre, in one transaction (see ShowScheduler).
+     * Shows already there are kept and worked around, so running this again
+     * for overlapping days only fills the gaps. Returns the number of shows
+     * added; clashes found among the existing shows go into conflicts.
+     */
+    public int generateSchedule(LocalDate from, int days, List<String> conflicts) throws SQLException {
+        long started = System.nanoTime();
+        HashMap<Integer, String> theatreNames = new HashMap<>();
+        ShowScheduler.Result result;
+        // Reads and writes on one connection under the lock, so no other job adds shows in between
+        synchronized (catalogWriteLock) {
+            try (Connection writer = openCatalogWriter()) {
+                result = generateSchedule(writer, from, days, theatreNames);
             }
-        } catch (SQLException e) {
-            System.err.println("Error loading movies: " + e.getMessage());
-            e.printStackTrace();
         }
-        return movies;
+        snapshotReader.invalidate();
+
+        for (ShowScheduler.Conflict conflict : result.conflicts()) {
+            ShowScheduler.Show show = conflict.show();
+            ShowScheduler.Show other = conflict.other();
+            conflicts.add(theatreNames.get(show.theatreId()) + " screen " + show.screen() + ": "
+                    + show.date() + " " + show.time() + " overlaps " + other.date() + " " + other.time());
+        }
+        System.out.println("Scheduled " + result.created().size() + " shows on " + days + " days in "
+                + (System.nanoTime() - started) / 1_000_000 + " ms, " + result.conflicts().size() + " conflicts");
+        return result.created().size();
     }
 
-    public ArrayList<String> getTheatres() {
-        ArrayList<String> theatres = new ArrayList<>();
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT name, location FROM theatres ORDER BY name")) {
-            
+    private ShowScheduler.Result generateSchedule(Connection writer, LocalDate from, int days,
+                                                  HashMap<Integer, String> theatreNames) throws SQLException {
+        HashMap<Integer, Integer> screens = new HashMap<>();
+        try (Statement stmt = writer.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT t.id, t.name, MAX(t.screens, COALESCE(MAX(s.screen), 1)) AS screens " +
+                     "FROM theatres t LEFT JOIN shows s ON s.theatre_id = t.id GROUP BY t.id")) {
             while (rs.next()) {
-                theatres.add(rs.getString("name") + " - " + rs.getString("location"));
+                theatreNames.put(rs.getInt("id"), rs.getString("name"));
+                screens.put(rs.getInt("id"), rs.getInt("screens"));
+            }
+        }
+        ArrayList<Movie> movies = new ArrayList<>();
+        HashMap<Integer, Integer> durations = new HashMap<>();
+        try (Statement stmt = writer.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name, genre, duration, rating FROM movies ORDER BY id")) {
+            while (rs.next()) {
+                Movie movie = readMovie(rs);
+                movies.add(movie);
+                if (movie.duration() > 0) {
+                    durations.put(movie.id(), movie.duration());
+                }
+            }
+        }
+        // The days either side too, for late shows running past midnight
+        ArrayList<ShowScheduler.Show> existing = new ArrayList<>();
+        try (PreparedStatement pstmt = writer.prepareStatement(
+                "SELECT movie_id, theatre_id, screen, show_date, show_time FROM shows " +
+                "WHERE show_date BETWEEN ? AND ? ORDER BY show_date, show_time")) {
+            pstmt.setString(1, from.minusDays(1).toString());
+            pstmt.setString(2, from.plusDays(days).toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    try {
+                        existing.add(new ShowScheduler.Show(rs.getInt("movie_id"), rs.getInt("theatre_id"),
+                                rs.getInt("screen"), LocalDate.parse(rs.getString("show_date")),
+                                LocalTime.parse(rs.getString("show_time"))));
+                    } catch (DateTimeParseException e) {
+                        System.err.println("Skipping show with unreadable date or time: " + e.getParsedString());
+                    }
+                }
             }
-        } catch (SQLException e) {
-            System.err.println("Error loading theatres: " + e.getMessage());
-            e.printStackTrace();
         }
-        return theatres;
-    }
 
-    public ArrayList<String> getBookedSeats(String movieInfo, String theatre, String date) {
-        ArrayList<String> bookedSeats = new ArrayList<>();
-        try {
-            // Extract movie name from the combo box format
-            String movieName = movieInfo.split(" \\(")[0];
-            
-            PreparedStatement pstmt = conn.prepareStatement(
-                    "SELECT b.seat_number FROM bookings b " +
-                    "JOIN movies m ON b.movie_id = m.id " +
-                    "JOIN theatres t ON b.theatre_id = t.id " +
-                    "WHERE m.name = ? AND t.name = ? AND b.booking_date = ?");
-            pstmt.setString(1, movieName);
-            pstmt.setString(2, theatre);
-            pstmt.setString(3, date);
+        ShowScheduler.Result result = new ShowScheduler().schedule(movies, screens, existing, durations, from, days);
 
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                bookedSeats.add(rs.getString("seat_number"));
+        writer.setAutoCommit(false);
+        try (PreparedStatement pstmt = writer.prepareStatement(
+                "INSERT OR IGNORE INTO shows (movie_id, theatre_id, screen, show_date, show_time) " +
+                "VALUES (?, ?, ?, ?, ?)")) {
+            for (ShowScheduler.Show show : result.created()) {
+                pstmt.setInt(1, show.movieId());
+                pstmt.setInt(2, show.theatreId());
+                pstmt.setInt(3, show.screen());
+                pstmt.setString(4, show.date().toString());
+                pstmt.setString(5, show.time().toString());
+                pstmt.addBatch();
             }
-            rs.close();
-            pstmt.close();
+            pstmt.executeBatch();
+            writer.commit();
         } catch (SQLException e) {
-            System.err.println("Error loading booked seats: " + e.getMessage());
-            e.printStackTrace();
+            writer.rollback();
+            throw e;
+        } finally {
+            writer.setAutoCommit(true);
         }
-        return bookedSeats;
+        return result;
     }
 
-    public boolean bookTickets(String movieInfo, String theatre, String date, 
-                               ArrayList<String> seats, String name, String phone) {
-        try {
-            String movieName = movieInfo.split(" \\(")[0];
-            
-            int movieId = getId("movies", "name", movieName);
-            int theatreId = getId("theatres", "name", theatre);
-
-            PreparedStatement pstmt = conn.prepareStatement(
-                    "INSERT INTO bookings (movie_id, theatre_id, booking_date, seat_number, customer_name, phone) " +
-                    "VALUES (?, ?, ?, ?, ?, ?)");
-
-            for (String seat : seats) {
-                pstmt.setInt(1, movieId);
-                pstmt.setInt(2, theatreId);
-                pstmt.setString(3, date);
-                pstmt.setString(4, seat);
-                pstmt.setString(5, name);
-                pstmt.setString(6, phone);
-                pstmt.executeUpdate();
+    // Dates from today on that the movie plays at the theatre, in order
+    public ArrayList<String> getShowDates(Movie movie, Theatre theatre) {
+        ArrayList<String> dates = new ArrayList<>();
+        try (SnapshotReader.Lease lease = snapshotReader.lease();
+             PreparedStatement pstmt = lease.catalog().prepareStatement(
+                     "SELECT DISTINCT show_date FROM shows " +
+                     "WHERE movie_id = ? AND theatre_id = ? AND show_date >= ? ORDER BY show_date")) {
+            pstmt.setInt(1, movie.id());
+            pstmt.setInt(2, theatre.id());
+            pstmt.setString(3, LocalDate.now().toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    dates.add(rs.getString(1));
+                }
             }
+        } catch (SQLException e) {
+            System.err.println("Error loading show dates: " + e.getMessage());
+        }
+        return dates;
+    }
 
-            pstmt.close();
-            System.out.println("Booking successful for " + name);
-            return true;
+    // Whether the theatre has any shows from today on. Theatres without a schedule
+    // keep the old behaviour: every movie, every day.
+    public boolean hasSchedule(Theatre theatre) {
+        try (SnapshotReader.Lease lease = snapshotReader.lease();
+             PreparedStatement pstmt = lease.catalog().prepareStatement(
+                     "SELECT 1 FROM shows WHERE theatre_id = ? AND show_date >= ? LIMIT 1")) {
+            pstmt.setInt(1, theatre.id());
+            pstmt.setString(2, LocalDate.now().toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
         } catch (SQLException e) {
-            System.err.println("Booking error: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("Error checking schedule: " + e.getMessage());
             return false;
         }
     }
 
-    public ArrayList<String[]> getAllBookings() {
-        ArrayList<String[]> bookings = new ArrayList<>();
-        try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(
-                    "SELECT m.name as movie, t.name as theatre, b.booking_date, " +
-                    "b.seat_number, b.customer_name, b.phone " +
-                    "FROM bookings b " +
-                    "JOIN movies m ON b.movie_id = m.id " +
-                    "JOIN theatres t ON b.theatre_id = t.id " +
-                    "ORDER BY b.booking_date DESC, b.booking_time DESC")) {
-
-            while (rs.next()) {
-                bookings.add(new String[]{
-                        rs.getString("movie"),
-                        rs.getString("theatre"),
-                        rs.getString("booking_date"),
-                        rs.getString("seat_number"),
-                        rs.getString("customer_name"),
-                        rs.getString("phone")
-                });
+    /**
+     * The movie's shows at the theatre on the date, earliest first; these are
+     * what bookings and seat maps are kept per. A theatre without a schedule
+     * has one all-day show.
+     */
+    public ArrayList<ShowTime> getShowTimes(Movie movie, Theatre theatre, String date) {
+        ArrayList<ShowTime> times = new ArrayList<>();
+        if (!hasSchedule(theatre)) {
+            times.add(ShowTime.allDay(date));
+            return times;
+        }
+        try (SnapshotReader.Lease lease = snapshotReader.lease();
+             PreparedStatement pstmt = lease.catalog().prepareStatement(
+                     "SELECT id, show_time, screen FROM shows " +
+                     "WHERE movie_id = ? AND theatre_id = ? AND show_date = ? ORDER BY show_time, screen")) {
+            pstmt.setInt(1, movie.id());
+            pstmt.setInt(2, theatre.id());
+            pstmt.setString(3, date);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    times.add(new ShowTime(rs.getInt("id"), date, rs.getString("show_time"), rs.getInt("screen")));
+                }
             }
         } catch (SQLException e) {
-            System.err.println("Error loading bookings: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("Error loading show times: " + e.getMessage());
         }
-        return bookings;
+        return times;
     }
 
-    private int getId(String table, String column, String value) throws SQLException {
-        try (PreparedStatement pstmt = conn.prepareStatement(
-                "SELECT id FROM " + table + " WHERE " + column + " = ?")) {
-            pstmt.setString(1, value);
+    /**
+     * Long catalog writes from background workers (imports, schedule runs) go
+     * through a connection of their own, so their transactions never pick up,
+     * commit or roll back writes made on the shared connection in the
+     * meantime. Hold catalogWriteLock while using it: these jobs run one at a
+     * time instead of failing on each other's write lock.
+     */
+    private Connection openCatalogWriter() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + ShardRouter.catalogPath());
+    }
+
+    // Bulk catalog load (see CatalogImporter for the file format)
+    public CatalogImporter.ImportReport importCatalog(Reader reader) throws IOException, SQLException {
+        try {
+            synchronized (catalogWriteLock) {
+                try (Connection writer = openCatalogWriter()) {
+                    return new CatalogImporter(writer).importCsv(reader);
+                }
+            }
+        } finally {
+            // Theatres may have been resized
+            theatreLayouts.clear();
+            seatInventory.clear();
+            dropMovieIndex();
+            snapshotReader.invalidate();
+        }
+    }
+
+    // Streaming bookings export (see BookingExporter for the formats)
+    public BookingExporter.ExportResult exportBookings(Path target, BookingExporter.Format format,
+                                                       String fromDate, String toDate,
+                                                       boolean incremental) throws IOException, SQLException {
+        // The rows come from a private copy of the files, whether or not snapshots are enabled:
+        // a long read on the live files would keep bookings from committing until it ended.
+        // Watermarks are written to the live catalog.
+        try (SnapshotReader.Lease copy = snapshotReader.copy()) {
+            return new BookingExporter(conn, copy.shards()).export(target, format, fromDate, toDate, incremental);
+        }
+    }
+
+    // --- EXISTING USER FUNCTIONALITY (Unchanged, for completeness) ---
+
+    public ArrayList<Movie> getMovies() {
+        ArrayList<Movie> movies = new ArrayList<>();
+        try (SnapshotReader.Lease lease = snapshotReader.lease();
+             Statement stmt = lease.catalog().createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT id, name, genre, duration, rating FROM movies ORDER BY name")) {
+            
+            while (rs.next()) {
+                movies.add(readMovie(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading movies: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return movies;
+    }
+
+    private static Movie readMovie(ResultSet rs) throws SQLException {
+        return new Movie(rs.getInt("id"), rs.getString("name"), rs.getString("genre"),
+                rs.getInt("duration"), rs.getString("rating"));
+    }
+
+    /**
+     * Up to limit movies matching the query on name or genre, best first.
+     * Word prefixes match directly and misspellings are caught by trigram
+     * overlap (see MovieSearchIndex).
+     */
+    public ArrayList<Movie> searchMovies(String query, int limit) {
+        return getMovieIndex().search(query, limit);
+    }
+
+    /**
+     * The type-ahead index, rebuilt when the movies table has changed: at most
+     * once a second a search compares the movie count and highest ID with the
+     * ones the index was built from, so movies added by other terminals or
+     * processes show up too. Changes made here (addMovie, imports) drop the
+     * index straight away.
+     */
+    private synchronized MovieSearchIndex getMovieIndex() {
+        long now = System.currentTimeMillis();
+        if (movieIndex != null && now - movieIndexCheckedAt < MOVIE_INDEX_CHECK_MS) {
+            return movieIndex;
+        }
+        try (SnapshotReader.Lease lease = snapshotReader.lease();
+             Statement stmt = lease.catalog().createStatement()) {
+            String signature;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*), COALESCE(MAX(id), 0) FROM movies")) {
+                signature = rs.getLong(1) + ":" + rs.getLong(2);
+            }
+            movieIndexCheckedAt = now;
+            if (movieIndex != null && signature.equals(movieIndexSignature)) {
+                return movieIndex;
+            }
+            MovieSearchIndex index = new MovieSearchIndex();
+            try (ResultSet rs = stmt.executeQuery("SELECT id, name, genre, duration, rating FROM movies")) {
+                while (rs.next()) {
+                    index.add(readMovie(rs));
+                }
+            }
+            movieIndex = index;
+            movieIndexSignature = signature;
+        } catch (SQLException e) {
+            System.err.println("Error indexing movies: " + e.getMessage());
+        }
+        return movieIndex != null ? movieIndex : new MovieSearchIndex();
+    }
+
+    // Catalog changes made here rebuild the index on the next search
+    private synchronized void dropMovieIndex() {
+        movieIndex = null;
+    }
+
+    public ArrayList<Theatre> getTheatres() {
+        ArrayList<Theatre> theatres = new ArrayList<>();
+        try (SnapshotReader.Lease lease = snapshotReader.lease();
+             Statement stmt = lease.catalog().createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT id, name, location, total_seats FROM theatres ORDER BY name")) {
+            
+            while (rs.next()) {
+                theatres.add(new Theatre(rs.getInt("id"), rs.getString("name"), rs.getString("location"),
+                        rs.getInt("total_seats")));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading theatres: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return theatres;
+    }
+
+    public ArrayList<String> getBookedSeats(Movie movie, Theatre theatre, ShowTime showTime) {
+        ArrayList<String> bookedSeats = new ArrayList<>();
+        ShowRef show = ShowRef.of(movie, theatre, showTime);
+        if (journal != null && !syncJournal()) {
+            return cachedSeats(show.key());
+        }
+        try {
+            bookedSeats = loadBookedSeats(show);
+        } catch (SQLException e) {
+            if (journal != null && retryPolicy.isUnavailable(e)) {
+                goOffline(e);
+                return cachedSeats(show.key());
+            }
+            System.err.println("Error loading booked seats: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return bookedSeats;
+    }
+
+    // Booked seats according to the cached seat map (including offline bookings), or none if it is not cached
+    private ArrayList<String> cachedSeats(String showKey) {
+        List<String> booked = seatInventory.bookedSeats(showKey);
+        return booked == null ? new ArrayList<>() : new ArrayList<>(booked);
+    }
+
+    // The theatre's hall, for drawing its seat map
+    public SeatLayout getSeatLayout(Theatre theatre) {
+        return layoutFor(theatre.id());
+    }
+
+    private SeatLayout layoutFor(int theatreId) {
+        SeatLayout layout = theatreLayouts.get(theatreId);
+        if (layout != null) {
+            return layout;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT total_seats FROM theatres WHERE id = ?")) {
+            pstmt.setInt(1, theatreId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int seats = rs.next() ? rs.getInt(1) : 0;
+                if (seats > SeatLayout.MAX_CAPACITY) {
+                    System.err.println("Theatre " + theatreId + " has " + seats + " seats; only "
+                            + SeatLayout.MAX_CAPACITY + " can be booked");
+                    seats = SeatLayout.MAX_CAPACITY;
+                }
+                layout = SeatLayout.forCapacity(seats);
+            }
+        } catch (SQLException e) {
+            // Not cached, so the real layout is picked up once the catalog can be read
+            System.err.println("Error loading theatre size: " + e.getMessage());
+            return SeatLayout.STANDARD;
+        }
+        theatreLayouts.put(theatreId, layout);
+        return layout;
+    }
+
+    private ArrayList<String> loadBookedSeats(ShowRef show) throws SQLException {
+        return loadBookedSeats(shards.forTheatre(show.theatreId()), show);
+    }
+
+    /**
+     * Reads the show's booked seats, plus the seats held for open waitlist
+     * offers, and refreshes its availability bitmap with them.
+     */
+    private ArrayList<String> loadBookedSeats(Connection shard, ShowRef show) throws SQLException {
+        // Version first: if a booking lands in between, the seats are newer than the
+        // version and the next booking attempt simply sees a conflict and reloads
+        long version = readShowVersion(shard, show);
+        ArrayList<String> bookedSeats = new ArrayList<>();
+        try (PreparedStatement pstmt = shard.prepareStatement(
+                "SELECT seat_number FROM bookings WHERE movie_id = ? AND theatre_id = ? " +
+                "AND booking_date = ? AND show_id = ? AND status = 'BOOKED'")) {
+            setShow(pstmt, show);
+
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                bookedSeats.add(rs.getString("seat_number"));
+            }
+            rs.close();
+        }
+        try (PreparedStatement pstmt = shard.prepareStatement(
+                "SELECT offer_seats FROM waitlist WHERE movie_id = ? AND theatre_id = ? " +
+                "AND show_date = ? AND show_id = ? AND status = 'OFFERED' AND offer_expires > ?")) {
+            setShow(pstmt, show);
+            pstmt.setLong(5, System.currentTimeMillis());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    bookedSeats.addAll(List.of(rs.getString(1).split(",")));
+                }
+            }
+        }
+        seatInventory.load(show.key(), layoutFor(show.theatreId()), bookedSeats, version);
+        return bookedSeats;
+    }
+
+    // Binds the show to parameters 1 to 4: movie, theatre, date, show ID
+    private static void setShow(PreparedStatement pstmt, ShowRef show) throws SQLException {
+        pstmt.setInt(1, show.movieId());
+        pstmt.setInt(2, show.theatreId());
+        pstmt.setString(3, show.date());
+        pstmt.setInt(4, show.showId());
+    }
+
+    private long readShowVersion(Connection shard, ShowRef show) throws SQLException {
+        try (PreparedStatement pstmt = shard.prepareStatement(
+                "SELECT version FROM show_versions " +
+                "WHERE movie_id = ? AND theatre_id = ? AND show_date = ? AND show_id = ?")) {
+            setShow(pstmt, show);
+            ResultSet rs = pstmt.executeQuery();
+            long version = rs.next() ? rs.getLong(1) : 0;
+            rs.close();
+            return version;
+        }
+    }
+
+    /**
+     * Moves the show from expectedVersion to expectedVersion + 1 inside the
+     * current transaction. Returns false if another terminal got there first.
+     * A show with no version row yet counts as version 0.
+     */
+    private boolean advanceShowVersion(Connection shard, ShowRef show, long expectedVersion) throws SQLException {
+        try (PreparedStatement insert = shard.prepareStatement(
+                     "INSERT OR IGNORE INTO show_versions (movie_id, theatre_id, show_date, show_id, version) " +
+                     "VALUES (?, ?, ?, ?, 0)");
+             PreparedStatement update = shard.prepareStatement(
+                     "UPDATE show_versions SET version = version + 1 " +
+                     "WHERE movie_id = ? AND theatre_id = ? AND show_date = ? AND show_id = ? AND version = ?")) {
+            setShow(insert, show);
+            insert.executeUpdate();
+
+            setShow(update, show);
+            update.setLong(5, expectedVersion);
+            return update.executeUpdate() == 1;
+        }
+    }
+
+    // Unconditional version bump (cancellations); returns the new version
+    private long bumpShowVersion(Connection shard, ShowRef show) throws SQLException {
+        try (PreparedStatement upsert = shard.prepareStatement(
+                "INSERT INTO show_versions (movie_id, theatre_id, show_date, show_id, version) " +
+                "VALUES (?, ?, ?, ?, 1) " +
+                "ON CONFLICT(movie_id, theatre_id, show_date, show_id) DO UPDATE SET version = version + 1")) {
+            setShow(upsert, show);
+            upsert.executeUpdate();
+        }
+        return readShowVersion(shard, show);
+    }
+
+    // --- SEAT ALLOCATION ---
+
+    /**
+     * Suggests the best free seats for a party of the given size (one block
+     * near the centre of the hall if possible). Works off the cached
+     * availability bitmap, which is loaded on first use. Returns an empty list
+     * when the show cannot seat the whole party.
+     */
+    public ArrayList<String> findBestSeats(Movie movie, Theatre theatre, ShowTime showTime, int partySize) {
+        ArrayList<String> seats = new ArrayList<>();
+        try {
+            ShowRef show = ShowRef.of(movie, theatre, showTime);
+            long[] booked = seatInventory.snapshot(show.key());
+            if (booked == null) {
+                loadBookedSeats(show);
+                booked = seatInventory.snapshot(show.key());
+            }
+            SeatLayout layout = layoutFor(show.theatreId());
+            for (int index : new SeatAllocator(layout).allocate(booked, partySize)) {
+                seats.add(layout.label(index));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error allocating seats: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return seats;
+    }
+
+    // --- PRICING ---
+
+    public PricingRules getPricingRules() {
+        return pricingEngine.getRules();
+    }
+
+    // Replaces every pricing rule; other terminals pick the change up within PRICING_REFRESH_MS
+    public boolean savePricingRules(PricingRules rules) {
+        try {
+            conn.setAutoCommit(false);
+            try (Statement clear = conn.createStatement();
+                 PreparedStatement pstmt = conn.prepareStatement(
+                         "INSERT INTO pricing_rules (name, value) VALUES (?, ?)")) {
+                clear.executeUpdate("DELETE FROM pricing_rules");
+                for (Map.Entry<String, String> setting : rules.toSettings().entrySet()) {
+                    pstmt.setString(1, setting.getKey());
+                    pstmt.setString(2, setting.getValue());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error saving pricing rules: " + e.getMessage());
+            return false;
+        }
+        pricingEngine.setRules(rules);
+        System.out.println("Pricing rules updated: " + rules.toSettings());
+        return true;
+    }
+
+    // Rules as stored, or the ones in use if they cannot be read or are not valid
+    private PricingRules loadPricingRules(Connection db) {
+        HashMap<String, String> settings = new HashMap<>();
+        try (Statement stmt = db.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name, value FROM pricing_rules")) {
+            while (rs.next()) {
+                settings.put(rs.getString("name"), rs.getString("value"));
+            }
+            return PricingRules.fromSettings(settings);
+        } catch (SQLException e) {
+            System.err.println("Error loading pricing rules: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring invalid pricing rules: " + e.getMessage());
+        }
+        return pricingEngine.getRules();
+    }
+
+    // Runs on the pricing refresher, on a connection of its own
+    private void reloadPricingRules() {
+        try (Connection reader = DriverManager.getConnection("jdbc:sqlite:" + ShardRouter.catalogPath())) {
+            PricingRules rules = loadPricingRules(reader);
+            if (!rules.equals(pricingEngine.getRules())) {
+                pricingEngine.setRules(rules);
+                System.out.println("Pricing rules reloaded: " + rules.toSettings());
+            }
+        } catch (SQLException e) {
+            System.err.println("Error reloading pricing rules: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Total price of the given seats at the current occupancy of the show.
+     * Uses the cached occupancy counters, so it is cheap enough to call on
+     * every seat click; only a show whose seats have never been loaded is
+     * read from the database first, so the quote includes its surge.
+     * bookTickets() charges what this quotes unless the show fills further
+     * in between.
+     */
+    public double quoteTotal(Movie movie, Theatre theatre, ShowTime showTime, Collection<String> seats) {
+        ShowRef show = ShowRef.of(movie, theatre, showTime);
+        if (seatInventory.getVersion(show.key()) < 0) {
+            try {
+                loadBookedSeats(show);
+            } catch (SQLException e) {
+                System.err.println("Quoting without surge, seat map not loaded: " + e.getMessage());
+            }
+        }
+        double total = 0;
+        for (double price : priceSeats(show, showTime.time(), seats, occupancy(show))) {
+            total += price;
+        }
+        return total;
+    }
+
+    // Share of the show's seats sold or held, from the cached seat map (0 if it is not cached)
+    private double occupancy(ShowRef show) {
+        SeatLayout layout = layoutFor(show.theatreId());
+        int booked = Math.max(seatInventory.bookedCount(show.key()), 0);
+        return (double) booked / layout.getCapacity();
+    }
+
+    private double[] priceSeats(ShowRef show, String time, Collection<String> seats, double occupancy) {
+        SeatLayout layout = layoutFor(show.theatreId());
+        double[] prices = new double[seats.size()];
+        int i = 0;
+        for (String seat : seats) {
+            prices[i++] = pricingEngine.quote(layout, seat, show.date(), time, occupancy);
+        }
+        return prices;
+    }
+
+    // Start time of the show (HH:mm), or null for an all-day show
+    private static String showTimeOf(Connection db, ShowRef show) throws SQLException {
+        if (show.showId() == 0) {
+            return null;
+        }
+        try (PreparedStatement pstmt = db.prepareStatement("SELECT show_time FROM shows WHERE id = ?")) {
+            pstmt.setInt(1, show.showId());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Books the seats as one order and returns the new order ID, or
+     * SEATS_UNAVAILABLE if another terminal has taken any of them, or
+     * BOOKING_FAILED. The order row holds the customer and total; each seat
+     * row holds only the show, seat and the price charged for it.
+     *
+     * Concurrency is optimistic: seats are checked against the cached seat
+     * map, and the transaction bumps the show's version only if it still
+     * matches that map. If another terminal changed the show in the meantime
+     * the seat map is re-read inside the transaction (which now holds the
+     * write lock, so it cannot move again) and the booking goes ahead if the
+     * seats are still free. A locked database file is retried with backoff
+     * according to the RetryPolicy.
+     *
+     * With offline booking enabled, a database that stays locked or cannot
+     * be reached does not fail the booking: it is checked against the cached
+     * seat map, written to the journal and BOOKED_OFFLINE is returned.
+     * Journaled bookings are replayed in the background once the database is
+     * back; bookings keep going to the journal until that has finished.
+     *
+     * The order is linked to the customer with this phone number (digits
+     * only), who is created or updated with the given name and email (null
+     * keeps the email on file). A known customer with unchanged details is
+     * linked straight away; otherwise the background linker does it once the
+     * order has committed, so neither a rejected booking nor the booking
+     * transaction writes to the customers. The journal does not keep the
+     * email.
+     */
+    public int bookTickets(Movie movie, Theatre theatre, ShowTime showTime,
+                           ArrayList<String> seats, String name, String phone, String email) {
+        ShowRef show = ShowRef.of(movie, theatre, showTime);
+
+        if (journal != null && !syncJournal()) {
+            return bookOffline(movie, theatre, showTime, seats, name, phone);
+        }
+        for (int attempt = 1; ; attempt++) {
+            bookingMetrics.attempt();
+            try {
+                if (seatInventory.getVersion(show.key()) < 0) {
+                    loadBookedSeats(show);
+                }
+                if (!seatInventory.isAvailable(show.key(), seats)) {
+                    bookingMetrics.seatsTaken();
+                    System.out.println("Booking rejected: seats already taken " + seats);
+                    return SEATS_UNAVAILABLE;
+                }
+
+                // Priced from the seat map the seats were checked against, as quoteTotal() did
+                double[] prices = priceSeats(show, showTime.time(), seats, occupancy(show));
+                Customer customer = customerFor(name, phone, email);
+                int orderId = insertOrder(shards.forTheatre(show.theatreId()), show, seats, customer, prices, 0, null);
+                if (orderId == SEATS_UNAVAILABLE) {
+                    bookingMetrics.seatsTaken();
+                    System.out.println("Booking rejected: seats taken at another terminal " + seats);
+                    return SEATS_UNAVAILABLE;
+                }
+                bookingMetrics.success();
+                if (attempt > 1) {
+                    System.out.println("Booking succeeded after " + attempt + " attempts (" + bookingMetrics + ")");
+                }
+                System.out.println("Booking successful for " + name + " (order " + orderId + ")");
+                return orderId;
+            } catch (SQLException e) {
+                if (journal != null && retryPolicy.isUnavailable(e) && !retryPolicy.isRetryable(e)) {
+                    goOffline(e);
+                    return bookOffline(movie, theatre, showTime, seats, name, phone);
+                }
+                if (!retryPolicy.isRetryable(e)) {
+                    bookingMetrics.abort();
+                    System.err.println("Booking error: " + e.getMessage());
+                    e.printStackTrace();
+                    return BOOKING_FAILED;
+                }
+                bookingMetrics.busy();
+            }
+
+            if (attempt >= retryPolicy.getMaxAttempts() || !retryPolicy.pause(attempt)) {
+                if (journal != null && attempt >= retryPolicy.getMaxAttempts()) {
+                    goOffline(null);
+                    return bookOffline(movie, theatre, showTime, seats, name, phone);
+                }
+                bookingMetrics.abort();
+                System.err.println("Booking aborted after " + attempt + " attempts (" + bookingMetrics + ")");
+                return BOOKING_FAILED;
+            }
+            bookingMetrics.retry();
+        }
+    }
+
+    /**
+     * One booking transaction; returns the order ID, or SEATS_UNAVAILABLE.
+     * The customer comes from customerFor(); one with ID 0 is linked by the
+     * background linker after the commit. The prices are charged as given,
+     * one per seat, and stored with each seat. A waitlist ID other than 0 books that entry's open offer, whose seats are
+     * already held for it, and marks the entry seated in the same
+     * transaction; if the offer has lapsed nothing is booked. A journal
+     * entry is recorded on the order, which the database then keeps from
+     * being booked twice.
+     */
+    private int insertOrder(Connection shard, ShowRef show, ArrayList<String> seats, Customer customer,
+                            double[] prices, int waitlistId, BookingJournal.Entry journalEntry)
+            throws SQLException {
+        String showKey = show.key();
+        int orderId;
+        long newVersion;
+        shard.setAutoCommit(false);
+        try (PreparedStatement orderStmt = shard.prepareStatement(
+                     "INSERT INTO orders (customer_id, customer_name, phone, email, total, journal_seq, " +
+                     "journal_taken_at) VALUES (?, ?, ?, ?, ?, ?, ?)");
+             PreparedStatement seatStmt = shard.prepareStatement(
+                     "INSERT INTO bookings (order_id, movie_id, theatre_id, booking_date, show_id, seat_number, " +
+                     "price) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+
+            long expectedVersion = seatInventory.getVersion(showKey);
+            if (!advanceShowVersion(shard, show, expectedVersion)) {
+                // Stale seat map: re-read it under our write lock and validate again
+                bookingMetrics.versionConflict();
+                loadBookedSeats(shard, show);
+                expectedVersion = seatInventory.getVersion(showKey);
+                // Offered seats show as taken; for an offer, markSeated() checks the hold instead
+                if ((waitlistId == 0 && !seatInventory.isAvailable(showKey, seats))
+                        || !advanceShowVersion(shard, show, expectedVersion)) {
+                    shard.rollback();
+                    return SEATS_UNAVAILABLE;
+                }
+            }
+            newVersion = expectedVersion + 1;
+
+            double total = 0;
+            for (double price : prices) {
+                total += price;
+            }
+
+            if (customer.id() != 0) {
+                orderStmt.setInt(1, customer.id());
+            } else {
+                orderStmt.setNull(1, Types.INTEGER);
+            }
+            orderStmt.setString(2, customer.name());
+            orderStmt.setString(3, customer.phone());
+            orderStmt.setString(4, customer.email());
+            orderStmt.setDouble(5, total);
+            if (journalEntry != null) {
+                orderStmt.setLong(6, journalEntry.getSeq());
+                orderStmt.setLong(7, journalEntry.getTakenAt());
+            } else {
+                orderStmt.setNull(6, Types.INTEGER);
+                orderStmt.setNull(7, Types.INTEGER);
+            }
+            orderStmt.executeUpdate();
+            orderId = lastInsertId(shard);
+
+            int i = 0;
+            for (String seat : seats) {
+                seatStmt.setInt(1, orderId);
+                seatStmt.setInt(2, show.movieId());
+                seatStmt.setInt(3, show.theatreId());
+                seatStmt.setString(4, show.date());
+                seatStmt.setInt(5, show.showId());
+                seatStmt.setString(6, seat);
+                seatStmt.setDouble(7, prices[i++]);
+                seatStmt.addBatch();
+            }
+            seatStmt.executeBatch();
+            updateRollups(shard, show, seats.size(), total);
+            if (waitlistId != 0 && !markSeated(shard, waitlistId, orderId)) {
+                shard.rollback();
+                return SEATS_UNAVAILABLE;
+            }
+            shard.commit();
+        } catch (SQLException e) {
+            shard.rollback();
+            throw e;
+        } finally {
+            shard.setAutoCommit(true);
+        }
+
+        seatInventory.markBooked(showKey, seats, newVersion);
+        if (customer.id() == 0) {
+            scheduleCustomerLinking(shards.shardOf(show.theatreId()));
+        }
+        return orderId;
+    }
+
+    public BookingMetrics getBookingMetrics() {
+        return bookingMetrics;
+    }
+
+    // --- OFFLINE BOOKING ---
+
+    // Holds the seats in the cached seat map and journals the booking; the database is not touched
+    private int bookOffline(Movie movie, Theatre theatre, ShowTime showTime, ArrayList<String> seats,
+                            String name, String phone) {
+        ShowRef show = ShowRef.of(movie, theatre, showTime);
+        String showKey = show.key();
+        if (!seatInventory.isLoaded(showKey)) {
+            bookingMetrics.abort();
+            System.err.println("Offline booking refused: the seat map for this show was never loaded");
+            return BOOKING_FAILED;
+        }
+        // Priced before the seats are held, like an online booking
+        double[] prices = priceSeats(show, showTime.time(), seats, occupancy(show));
+        if (!seatInventory.reserve(showKey, seats)) {
+            bookingMetrics.seatsTaken();
+            System.out.println("Offline booking rejected: seats already taken " + seats);
+            return SEATS_UNAVAILABLE;
+        }
+        try {
+            BookingJournal.Entry entry = journal.append(movie, theatre, showTime, seats, name, phone, prices);
+            bookingMetrics.offline();
+            System.out.println("Database unavailable; booking for " + name + " journaled as entry " + entry.getSeq());
+            return BOOKED_OFFLINE;
+        } catch (IOException e) {
+            seatInventory.unreserve(showKey, seats);
+            bookingMetrics.abort();
+            System.err.println("Offline booking failed: " + e.getMessage());
+            e.printStackTrace();
+            return BOOKING_FAILED;
+        }
+    }
+
+    private void goOffline(SQLException cause) {
+        if (System.currentTimeMillis() >= offlineUntil) {
+            System.err.println("Database unavailable, booking offline to " + journal.getPath()
+                    + (cause != null ? ": " + cause.getMessage() : ""));
+        }
+        offlineUntil = System.currentTimeMillis() + OFFLINE_PROBE_MS;
+    }
+
+    /**
+     * True if the database can be used: it is not known to be down and
+     * nothing is waiting in the journal. Otherwise a replay is started in
+     * the background, unless one is already running, and false is returned
+     * so the caller keeps working from the cached seat maps meanwhile.
+     */
+    private boolean syncJournal() {
+        if (System.currentTimeMillis() < offlineUntil) {
+            return false;
+        }
+        if (journal.pendingCount() == 0) {
+            return true;
+        }
+        if (replayScheduled.compareAndSet(false, true)) {
+            try {
+                journalReplayer.execute(() -> {
+                    try {
+                        replayJournal();
+                    } finally {
+                        replayScheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; whatever is left is replayed by the next process
+                replayScheduled.set(false);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replays journaled offline bookings into the database, oldest first, at
+     * the prices the customers were quoted. Each show's seat map is re-read
+     * from the database first, so every entry is checked against what was
+     * really sold meanwhile; an entry whose seats are gone is recorded as a
+     * conflict. Stops early, leaving the rest pending, if the database turns
+     * out to be unavailable still. Entries whose order is already in the
+     * database (replayed before the journal could record it) are only marked
+     * replayed. New offline bookings can be journaled while this runs.
+     */
+    public BookingJournal.ReplayReport replayJournal() {
+        if (journal == null) {
+            return new BookingJournal.ReplayReport(0, new ArrayList<>(), 0);
+        }
+        int replayed = 0;
+        ArrayList<BookingJournal.Entry> conflicts = new ArrayList<>();
+        synchronized (replayLock) {
+            HashSet<String> reloaded = new HashSet<>();
+            try {
+                for (BookingJournal.Entry entry : journal.pending()) {
+                    ShowRef show = showOf(entry);
+                    String showKey = show.key();
+                    try {
+                        Connection shard = shards.forTheatre(show.theatreId());
+                        int existing = journaledOrder(shard, entry);
+                        if (existing != 0) {
+                            journal.markReplayed(entry, existing);
+                            replayed++;
+                            continue;
+                        }
+                        // Drops the offline holds from the cached map; the database is the truth again
+                        if (reloaded.add(showKey)) {
+                            loadBookedSeats(show);
+                        }
+                        int orderId = seatInventory.isAvailable(showKey, entry.getSeats())
+                                ? insertOrder(shard, show, entry.getSeats(),
+                                        customerFor(entry.getCustomerName(), entry.getPhone(), null),
+                                        entry.getPrices(), 0, entry)
+                                : SEATS_UNAVAILABLE;
+                        if (orderId == SEATS_UNAVAILABLE) {
+                            journal.markConflict(entry, "seats sold elsewhere while offline");
+                            conflicts.add(entry);
+                        } else {
+                            journal.markReplayed(entry, orderId);
+                            replayed++;
+                        }
+                    } catch (SQLException e) {
+                        if (retryPolicy.isUnavailable(e)) {
+                            goOffline(e);
+                            break;
+                        }
+                        // Seat maps may now hold seats this entry did not get
+                        seatInventory.invalidate(showKey);
+                        reloaded.remove(showKey);
+                        journal.markConflict(entry, e.getMessage());
+                        conflicts.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                // The booking that was just replayed may be replayed again later, and then shows as a conflict
+                System.err.println("Error updating offline journal: " + e.getMessage());
+                e.printStackTrace();
+            }
+            // Anything still pending keeps its seats held in the freshly loaded maps
+            for (BookingJournal.Entry entry : journal.pending()) {
+                seatInventory.reserve(showOf(entry).key(), entry.getSeats());
+            }
+        }
+        int pending = journal.pendingCount();
+        if (replayed > 0 || !conflicts.isEmpty()) {
+            System.out.println("Replayed " + replayed + " offline booking(s), " + conflicts.size()
+                    + " conflict(s), " + pending + " still pending");
+        }
+        for (BookingJournal.Entry conflict : conflicts) {
+            System.err.println("Offline booking conflict: " + conflict);
+        }
+        return new BookingJournal.ReplayReport(replayed, conflicts, pending);
+    }
+
+    // The order already booked from this journal entry, or 0
+    private int journaledOrder(Connection shard, BookingJournal.Entry entry) throws SQLException {
+        try (PreparedStatement pstmt = shard.prepareStatement(
+                "SELECT id FROM main.orders WHERE journal_seq = ? AND journal_taken_at = ?")) {
+            pstmt.setLong(1, entry.getSeq());
+            pstmt.setLong(2, entry.getTakenAt());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private static ShowRef showOf(BookingJournal.Entry entry) {
+        return new ShowRef(entry.getMovieId(), entry.getTheatreId(), entry.getDate(), entry.getShow().id());
+    }
+
+    // Offline bookings that could not be replayed and have not been acknowledged yet
+    public List<BookingJournal.Entry> getJournalConflicts() {
+        return journal != null ? journal.conflicts() : new ArrayList<>();
+    }
+
+    public void acknowledgeJournalConflicts() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.acknowledgeConflicts();
+        } catch (IOException e) {
+            System.err.println("Error updating offline journal: " + e.getMessage());
+        }
+    }
+
+    public boolean isOfflineBookingEnabled() {
+        return journal != null;
+    }
+
+    // --- CANCELLATION ---
+
+    // Cancels every seat still booked on the order
+    public int cancelOrder(int orderId) {
+        ArrayList<Integer> bookingIds = new ArrayList<>();
+        orderId = currentOrderId(orderId);
+        int shard = shards.shardOfId(orderId);
+        if (shard < 0) {
+            return 0;
+        }
+        try (PreparedStatement pstmt = shards.get(shard).prepareStatement(
+                "SELECT id FROM bookings WHERE order_id = ? AND status = 'BOOKED'")) {
+            pstmt.setInt(1, orderId);
             ResultSet rs = pstmt.executeQuery();
-            int id = rs.getInt("id");
+            while (rs.next()) {
+                bookingIds.add(rs.getInt("id"));
+            }
             rs.close();
-            return id;
+        } catch (SQLException e) {
+            System.err.println("Cancellation error: " + e.getMessage());
+            return 0;
+        }
+        return cancelBookings(bookingIds);
+    }
+
+    public boolean cancelBooking(int bookingId) {
+        ArrayList<Integer> ids = new ArrayList<>();
+        ids.add(bookingId);
+        return cancelBookings(ids) == 1;
+    }
+
+    /**
+     * Cancels the given seat bookings and returns how many were cancelled.
+     * Rows are kept with status CANCELLED (for refunds and reporting); the
+     * seats are released to the availability cache straight away so they can
+     * be sold again. IDs that are unknown or already cancelled are skipped.
+     * Bookings on the same shard are cancelled in one transaction.
+     */
+    public int cancelBookings(List<Integer> bookingIds) {
+        HashMap<Integer, ArrayList<Integer>> byShard = new HashMap<>();
+        for (int bookingId : bookingIds) {
+            int shard = shards.shardOfId(bookingId);
+            if (shard >= 0) {
+                byShard.computeIfAbsent(shard, k -> new ArrayList<>()).add(bookingId);
+            }
+        }
+        int cancelled = 0;
+        for (int shard : byShard.keySet()) {
+            cancelled += cancelBookings(shards.get(shard), byShard.get(shard));
+        }
+        System.out.println("Cancelled " + cancelled + " booking(s)");
+        return cancelled;
+    }
+
+    private int cancelBookings(Connection shard, List<Integer> bookingIds) {
+        // Released seat labels per show, applied to the cache once the transaction commits
+        HashMap<String, ArrayList<String>> released = new HashMap<>();
+        HashMap<String, ShowRef> shows = new HashMap<>();
+        HashMap<String, Long> newVersions = new HashMap<>();
+        int cancelled = 0;
+        try {
+            shard.setAutoCommit(false);
+            try (PreparedStatement select = shard.prepareStatement(
+                         "SELECT order_id, movie_id, theatre_id, booking_date, show_id, seat_number, price " +
+                         "FROM bookings WHERE id = ? AND status = 'BOOKED'");
+                 PreparedStatement update = shard.prepareStatement(
+                         "UPDATE bookings SET status = 'CANCELLED', cancelled_at = CURRENT_TIMESTAMP, " +
+                         "status_seq = (SELECT COALESCE(MAX(status_seq), 0) + 1 FROM bookings) " +
+                         "WHERE id = ? AND status = 'BOOKED'");
+                 PreparedStatement closeOrder = shard.prepareStatement(
+                         "UPDATE orders SET status = 'CANCELLED' WHERE id = ? AND NOT EXISTS " +
+                         "(SELECT 1 FROM bookings WHERE order_id = ? AND status = 'BOOKED')")) {
+
+                HashSet<Integer> orderIds = new HashSet<>();
+
+                for (int bookingId : bookingIds) {
+                    select.setInt(1, bookingId);
+                    ResultSet rs = select.executeQuery();
+                    if (!rs.next()) {
+                        rs.close();
+                        continue;
+                    }
+                    ShowRef show = new ShowRef(rs.getInt("movie_id"), rs.getInt("theatre_id"),
+                            rs.getString("booking_date"), rs.getInt("show_id"));
+                    String showKey = show.key();
+                    String seat = rs.getString("seat_number");
+                    double price = rs.getDouble("price");
+                    orderIds.add(rs.getInt("order_id"));
+                    rs.close();
+
+                    update.setInt(1, bookingId);
+                    if (update.executeUpdate() == 1) {
+                        updateRollups(shard, show, -1, -price);
+                        shows.putIfAbsent(showKey, show);
+                        released.computeIfAbsent(showKey, k -> new ArrayList<>()).add(seat);
+                        cancelled++;
+                    }
+                }
+
+                // Tell other terminals their seat maps for these shows are out of date
+                for (String showKey : shows.keySet()) {
+                    newVersions.put(showKey, bumpShowVersion(shard, shows.get(showKey)));
+                }
+
+                // An order is cancelled once none of its seats are left
+                for (int orderId : orderIds) {
+                    closeOrder.setInt(1, orderId);
+                    closeOrder.setInt(2, orderId);
+                    closeOrder.executeUpdate();
+                }
+            }
+            shard.commit();
+        } catch (SQLException e) {
+            System.err.println("Cancellation error: " + e.getMessage());
+            e.printStackTrace();
+            try {
+                shard.rollback();
+            } catch (SQLException rollbackError) {
+                System.err.println("Rollback error: " + rollbackError.getMessage());
+            }
+            return 0;
+        } finally {
+            try {
+                shard.setAutoCommit(true);
+            } catch (SQLException e) {
+                System.err.println("Error restoring auto-commit: " + e.getMessage());
+            }
+        }
+
+        for (String showKey : released.keySet()) {
+            seatInventory.release(showKey, released.get(showKey), newVersions.get(showKey));
+        }
+        if (!shows.isEmpty()) {
+            showsToMatch.addAll(shows.values());
+            scheduleWaitlistMatching();
+        }
+        return cancelled;
+    }
+
+    // --- WAITLIST ---
+
+    /**
+     * Puts a party on the show's waitlist; returns the waitlist ID, or -1.
+     * The show's occupancy now is kept with the entry, and seats offered to
+     * the party later are priced at it rather than at the price by then.
+     */
+    public int joinWaitlist(Movie movie, Theatre theatre, ShowTime showTime, int partySize, String name, String phone) {
+        if (partySize <= 0 || partySize > layoutFor(theatre.id()).getCapacity()) {
+            return -1;
+        }
+        ShowRef show = ShowRef.of(movie, theatre, showTime);
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO waitlist (movie_id, theatre_id, show_date, show_id, party_size, customer_name, phone, " +
+                "quoted_occupancy) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            if (seatInventory.getVersion(show.key()) < 0) {
+                loadBookedSeats(show);
+            }
+            setShow(pstmt, show);
+            pstmt.setInt(5, partySize);
+            pstmt.setString(6, name);
+            pstmt.setString(7, normalizePhone(phone));
+            pstmt.setDouble(8, occupancy(show));
+            pstmt.executeUpdate();
+            int waitlistId = lastInsertId(conn);
+            System.out.println("Waitlisted " + name + " (party of " + partySize + ") as #" + waitlistId);
+            return waitlistId;
+        } catch (SQLException e) {
+            System.err.println("Error joining waitlist: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    public boolean leaveWaitlist(int waitlistId) {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "UPDATE waitlist SET status = 'REMOVED' WHERE id = ? AND status = 'WAITING'")) {
+            pstmt.setInt(1, waitlistId);
+            return pstmt.executeUpdate() == 1;
+        } catch (SQLException e) {
+            System.err.println("Error leaving waitlist: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // The show's waitlist in joining order, seated parties and open offers included
+    public ArrayList<WaitlistEntry> getWaitlist(Movie movie, Theatre theatre, ShowTime showTime) {
+        ArrayList<WaitlistEntry> entries = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT id, party_size, customer_name, phone, status, order_id, joined_at, offer_seats, " +
+                "offer_prices, offer_expires FROM waitlist " +
+                "WHERE movie_id = ? AND theatre_id = ? AND show_date = ? AND show_id = ? AND status != 'REMOVED' " +
+                "ORDER BY id")) {
+            setShow(pstmt, ShowRef.of(movie, theatre, showTime));
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                boolean offered = "OFFERED".equals(rs.getString("status"));
+                Double offerTotal = null;
+                if (offered) {
+                    offerTotal = 0.0;
+                    for (double price : parsePrices(rs.getString("offer_prices"))) {
+                        offerTotal += price;
+                    }
+                }
+                entries.add(new WaitlistEntry(
+                        rs.getInt("id"),
+                        rs.getInt("party_size"),
+                        rs.getString("customer_name"),
+                        rs.getString("phone"),
+                        rs.getString("status"),
+                        rs.getObject("order_id") != null ? rs.getLong("order_id") : null,
+                        rs.getString("joined_at"),
+                        offered ? List.of(rs.getString("offer_seats").split(",")) : List.of(),
+                        offerTotal,
+                        offered ? rs.getLong("offer_expires") : null));
+            }
+            rs.close();
+        } catch (SQLException e) {
+            System.err.println("Error loading waitlist: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    // Seats held for a waitlisted party, at the prices they are offered at
+    private record Offer(int waitlistId, ShowRef show, List<String> seats, double[] prices,
+                         String customerName, String phone) {
+    }
+
+    private static final String OFFER_COLUMNS =
+            "id, movie_id, theatre_id, show_date, show_id, offer_seats, offer_prices, customer_name, phone";
+
+    private static Offer readOffer(ResultSet rs) throws SQLException {
+        return new Offer(rs.getInt("id"),
+                new ShowRef(rs.getInt("movie_id"), rs.getInt("theatre_id"), rs.getString("show_date"),
+                        rs.getInt("show_id")),
+                List.of(rs.getString("offer_seats").split(",")),
+                parsePrices(rs.getString("offer_prices")),
+                rs.getString("customer_name"),
+                rs.getString("phone"));
+    }
+
+    private static double[] parsePrices(String prices) {
+        String[] parts = prices.split(",");
+        double[] parsed = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            parsed[i] = Double.parseDouble(parts[i]);
+        }
+        return parsed;
+    }
+
+    /**
+     * Books the seats held for a waitlisted party at the prices they were
+     * offered, once the party (or the cashier for them) accepts. Returns the
+     * order ID, SEATS_UNAVAILABLE if the offer is no longer open (lapsed,
+     * declined or already booked), or BOOKING_FAILED.
+     */
+    public int confirmWaitlistOffer(int waitlistId) {
+        try {
+            Offer offer;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT " + OFFER_COLUMNS + " FROM waitlist WHERE id = ? AND status = 'OFFERED'")) {
+                pstmt.setInt(1, waitlistId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return SEATS_UNAVAILABLE;
+                    }
+                    offer = readOffer(rs);
+                }
+            }
+            ShowRef show = offer.show();
+            Connection shard = shards.forTheatre(show.theatreId());
+            if (seatInventory.getVersion(show.key()) < 0) {
+                loadBookedSeats(shard, show);
+            }
+            int orderId = insertOrder(shard, show, new ArrayList<>(offer.seats()),
+                    customerFor(offer.customerName(), offer.phone(), null), offer.prices(), waitlistId, null);
+            if (orderId == SEATS_UNAVAILABLE) {
+                System.out.println("Waitlist #" + waitlistId + ": offer is no longer open");
+            } else {
+                System.out.println("Waitlist #" + waitlistId + ": " + offer.customerName() + " booked "
+                        + offer.seats() + ", order " + orderId);
+            }
+            return orderId;
+        } catch (SQLException e) {
+            System.err.println("Error confirming waitlist offer: " + e.getMessage());
+            e.printStackTrace();
+            return BOOKING_FAILED;
+        }
+    }
+
+    // The party turned its offer down: it leaves the waitlist and the held seats go to the next party
+    public boolean declineWaitlistOffer(int waitlistId) {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT " + OFFER_COLUMNS + " FROM waitlist WHERE id = ? AND status = 'OFFERED'")) {
+            pstmt.setInt(1, waitlistId);
+            Offer offer;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                offer = readOffer(rs);
+            }
+            if (!endOffer(shards.forTheatre(offer.show().theatreId()), offer, "REMOVED")) {
+                return false;
+            }
+            scheduleWaitlistMatching();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error declining waitlist offer: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Closes an open offer with the given status and releases its seats; false if it was no longer open
+    private boolean endOffer(Connection shard, Offer offer, String status) throws SQLException {
+        long newVersion;
+        shard.setAutoCommit(false);
+        try (PreparedStatement pstmt = shard.prepareStatement(
+                "UPDATE waitlist SET status = ? WHERE id = ? AND status = 'OFFERED'")) {
+            pstmt.setString(1, status);
+            pstmt.setInt(2, offer.waitlistId());
+            if (pstmt.executeUpdate() == 0) {
+                shard.rollback();
+                return false;
+            }
+            newVersion = bumpShowVersion(shard, offer.show());
+            shard.commit();
+        } catch (SQLException e) {
+            shard.rollback();
+            throw e;
+        } finally {
+            shard.setAutoCommit(true);
+        }
+        seatInventory.release(offer.show().key(), offer.seats(), newVersion);
+        showsToMatch.add(offer.show());
+        return true;
+    }
+
+    private void scheduleWaitlistMatching() {
+        try {
+            waitlistMatcher.execute(this::matchWaitlists);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the shows are matched again when their next seats are released
+        }
+    }
+
+    /**
+     * Runs on the matcher thread, after cancellations and every 30 seconds:
+     * lapses offers that were not confirmed in time, then makes offers for
+     * every show that has had seats released. Uses its own connections, so
+     * it never shares a transaction with the event thread. A show that fails
+     * is tried again on the next run.
+     */
+    private void matchWaitlists() {
+        HashMap<Integer, Connection> writers = new HashMap<>();
+        try {
+            try {
+                expireOffers(writers);
+            } catch (SQLException e) {
+                System.err.println("Error lapsing waitlist offers: " + e.getMessage());
+            }
+            for (ShowRef show : new ArrayList<>(showsToMatch)) {
+                showsToMatch.remove(show);
+                try {
+                    offerFromWaitlist(writer(writers, shards.shardOf(show.theatreId())), show);
+                } catch (SQLException e) {
+                    showsToMatch.add(show);
+                    System.err.println("Waitlist allocation error: " + e.getMessage());
+                }
+            }
+        } finally {
+            for (Connection writer : writers.values()) {
+                try {
+                    writer.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing waitlist connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // The matcher's own connection to shard k, opened on first use
+    private Connection writer(HashMap<Integer, Connection> writers, int shard) throws SQLException {
+        Connection writer = writers.get(shard);
+        if (writer == null) {
+            writer = shard == 0 ? openCatalogWriter() : ShardRouter.open(shard);
+            writers.put(shard, writer);
+        }
+        return writer;
+    }
+
+    private void expireOffers(HashMap<Integer, Connection> writers) throws SQLException {
+        ArrayList<Offer> lapsed = new ArrayList<>();
+        try (PreparedStatement pstmt = writer(writers, 0).prepareStatement(
+                "SELECT " + OFFER_COLUMNS + " FROM waitlist WHERE status = 'OFFERED' AND offer_expires <= ?")) {
+            pstmt.setLong(1, System.currentTimeMillis());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    lapsed.add(readOffer(rs));
+                }
+            }
+        }
+        for (Offer offer : lapsed) {
+            if (endOffer(writer(writers, shards.shardOf(offer.show().theatreId())), offer, "EXPIRED")) {
+                System.out.println("Waitlist #" + offer.waitlistId() + ": offer of " + offer.seats() + " lapsed");
+            }
+        }
+    }
+
+    /**
+     * Holds released seats of the show for waitlisted parties: repeatedly the
+     * longest-waiting party that fits in the free seats, until none fits.
+     * Smaller parties behind a large one are not held up by it. Candidates
+     * come from the per-size queues (the head of each size that fits), so a
+     * release costs one index seek per distinct party size, not a scan of
+     * the list. Each party gets an offer, priced at the occupancy when it
+     * joined and held for OFFER_HOLD_MS, which it has to confirm; nothing is
+     * booked here. Returns the number of offers made.
+     */
+    private int offerFromWaitlist(Connection shard, ShowRef show) throws SQLException {
+        String showKey = show.key();
+        SeatLayout layout = layoutFor(show.theatreId());
+        SeatAllocator allocator = new SeatAllocator(layout);
+        String time = showTimeOf(shard, show);
+        int offered = 0;
+        int conflicts = 0;
+        try (PreparedStatement nextHead = shard.prepareStatement(
+                "SELECT id, party_size, customer_name, phone, quoted_occupancy FROM waitlist " +
+                "WHERE movie_id = ? AND theatre_id = ? AND show_date = ? AND show_id = ? AND status = 'WAITING' " +
+                "AND party_size > ? ORDER BY party_size, id LIMIT 1")) {
+            setShow(nextHead, show);
+
+            while (conflicts < retryPolicy.getMaxAttempts()) {
+                if (seatInventory.getVersion(showKey) < 0) {
+                    loadBookedSeats(shard, show);
+                }
+                int free = layout.getCapacity() - seatInventory.bookedCount(showKey);
+
+                // Oldest head among the queues of sizes that fit
+                int waitlistId = 0;
+                int partySize = 0;
+                String name = null;
+                String phone = null;
+                Double quotedOccupancy = null;
+                int size = 0;
+                while (size < free) {
+                    nextHead.setInt(5, size);
+                    ResultSet rs = nextHead.executeQuery();
+                    if (!rs.next() || rs.getInt("party_size") > free) {
+                        rs.close();
+                        break;
+                    }
+                    size = rs.getInt("party_size");
+                    if (waitlistId == 0 || rs.getInt("id") < waitlistId) {
+                        waitlistId = rs.getInt("id");
+                        partySize = size;
+                        name = rs.getString("customer_name");
+                        phone = rs.getString("phone");
+                        quotedOccupancy = rs.getObject("quoted_occupancy") != null
+                                ? rs.getDouble("quoted_occupancy") : null;
+                    }
+                    rs.close();
+                }
+                if (waitlistId == 0) {
+                    break;
+                }
+
+                ArrayList<String> seats = new ArrayList<>();
+                for (int index : allocator.allocate(seatInventory.snapshot(showKey), partySize)) {
+                    seats.add(layout.label(index));
+                }
+                // Entries from before quotes were kept are priced as the show stands now
+                double[] prices = seats.isEmpty() ? null : priceSeats(show, time, seats,
+                        quotedOccupancy != null ? quotedOccupancy : occupancy(show));
+                if (seats.isEmpty() || !createOffer(shard, show, waitlistId, seats, prices)) {
+                    // Seat map dropped or changed under us, or the party was served elsewhere; reload and look again
+                    seatInventory.invalidate(showKey);
+                    conflicts++;
+                    continue;
+                }
+                offered++;
+                System.out.println("Waitlist #" + waitlistId + ": holding " + seats + " for " + name + " (" + phone
+                        + ") for " + OFFER_HOLD_MS / 60_000 + " minutes");
+            }
+        }
+        return offered;
+    }
+
+    // Holds the seats for the waiting party in one transaction; false if the show or the entry moved on meanwhile
+    private boolean createOffer(Connection shard, ShowRef show, int waitlistId, ArrayList<String> seats,
+                                double[] prices) throws SQLException {
+        String showKey = show.key();
+        long expectedVersion = seatInventory.getVersion(showKey);
+        StringBuilder priceList = new StringBuilder();
+        for (double price : prices) {
+            if (priceList.length() > 0) {
+                priceList.append(',');
+            }
+            priceList.append(price);
+        }
+        shard.setAutoCommit(false);
+        try (PreparedStatement pstmt = shard.prepareStatement(
+                "UPDATE waitlist SET status = 'OFFERED', offer_seats = ?, offer_prices = ?, offer_expires = ? " +
+                "WHERE id = ? AND status = 'WAITING'")) {
+            if (!advanceShowVersion(shard, show, expectedVersion)) {
+                shard.rollback();
+                return false;
+            }
+            pstmt.setString(1, String.join(",", seats));
+            pstmt.setString(2, priceList.toString());
+            pstmt.setLong(3, System.currentTimeMillis() + OFFER_HOLD_MS);
+            pstmt.setInt(4, waitlistId);
+            if (pstmt.executeUpdate() == 0) {
+                shard.rollback();
+                return false;
+            }
+            shard.commit();
+        } catch (SQLException e) {
+            shard.rollback();
+            throw e;
+        } finally {
+            shard.setAutoCommit(true);
+        }
+        // Held seats count as taken until the offer is booked, declined or lapses
+        seatInventory.markBooked(showKey, seats, expectedVersion + 1);
+        return true;
+    }
+
+    // Books the party's offer: only while it is still open
+    private boolean markSeated(Connection shard, int waitlistId, int orderId) throws SQLException {
+        try (PreparedStatement pstmt = shard.prepareStatement(
+                "UPDATE waitlist SET status = 'SEATED', order_id = ? " +
+                "WHERE id = ? AND status = 'OFFERED' AND offer_expires > ?")) {
+            pstmt.setInt(1, orderId);
+            pstmt.setInt(2, waitlistId);
+            pstmt.setLong(3, System.currentTimeMillis());
+            return pstmt.executeUpdate() == 1;
+        }
+    }
+
+    // --- ANALYTICS (reads rollups only) ---
+
+    public ArrayList<ShowRollup> getShowRollups() {
+        // A show lives on exactly one shard, so the shards' rows only need merging
+        ArrayList<ShowRollup> rows;
+        try (SnapshotReader.Lease lease = snapshotReader.lease()) {
+            rows = readShards(lease.shards(), shard -> {
+                ArrayList<ShowRollup> shardRows = new ArrayList<>();
+                try (Statement stmt = shard.createStatement();
+                     ResultSet rs = stmt.executeQuery(
+                             "SELECT m.name, t.name, r.show_date, s.show_time, r.seats_sold, t.total_seats, " +
+                             "ROUND(100.0 * r.seats_sold / NULLIF(t.total_seats, 0), 1) AS occupancy, r.revenue " +
+                             "FROM show_rollup r " +
+                             "JOIN movies m ON r.movie_id = m.id " +
+                             "JOIN theatres t ON r.theatre_id = t.id " +
+                             "LEFT JOIN shows s ON r.show_id = s.id " +
+                             "ORDER BY r.show_date DESC, s.show_time, m.name, t.name")) {
+                    while (rs.next()) {
+                        shardRows.add(new ShowRollup(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                                rs.getInt(5), rs.getInt(6), rs.getObject(7) != null ? rs.getDouble(7) : null,
+                                rs.getDouble(8)));
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Error loading analytics: " + e.getMessage());
+                    e.printStackTrace();
+                }
+                return shardRows;
+            });
+        }
+        if (shards.getShardCount() > 1) {
+            rows.sort(Comparator.comparing(ShowRollup::date).reversed()
+                    .thenComparing(ShowRollup::time, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(ShowRollup::movie)
+                    .thenComparing(ShowRollup::theatre));
+        }
+        return rows;
+    }
+
+    // Newest date first
+    public ArrayList<SalesTotal> getDailyRollups() {
+        return sumRollups("SELECT show_date, seats_sold, revenue FROM daily_rollup",
+                Comparator.comparing(SalesTotal::key).reversed());
+    }
+
+    // Highest revenue first
+    public ArrayList<SalesTotal> getMovieRollups() {
+        return sumRollups("SELECT m.name, r.seats_sold, r.revenue FROM movie_rollup r " +
+                "JOIN movies m ON r.movie_id = m.id",
+                Comparator.comparingDouble(SalesTotal::revenue).reversed());
+    }
+
+    // Key, seats sold, revenue: adds up what each shard has for the same key
+    private ArrayList<SalesTotal> sumRollups(String sql, Comparator<SalesTotal> order) {
+        ArrayList<SalesTotal> perShard;
+        try (SnapshotReader.Lease lease = snapshotReader.lease()) {
+            perShard = readShards(lease.shards(), shard -> {
+                ArrayList<SalesTotal> shardRows = new ArrayList<>();
+                try (Statement stmt = shard.createStatement();
+                     ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        shardRows.add(new SalesTotal(rs.getString(1), rs.getLong(2), rs.getDouble(3)));
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Error loading analytics: " + e.getMessage());
+                    e.printStackTrace();
+                }
+                return shardRows;
+            });
+        }
+        HashMap<String, double[]> totals = new HashMap<>();
+        for (SalesTotal row : perShard) {
+            double[] total = totals.computeIfAbsent(row.key(), k -> new double[2]);
+            total[0] += row.seatsSold();
+            total[1] += row.revenue();
+        }
+        ArrayList<SalesTotal> rows = new ArrayList<>();
+        for (Map.Entry<String, double[]> entry : totals.entrySet()) {
+            rows.add(new SalesTotal(entry.getKey(), (long) entry.getValue()[0], entry.getValue()[1]));
+        }
+        rows.sort(order);
+        return rows;
+    }
+
+    // --- CUSTOMERS ---
+
+    // Phone numbers are kept and looked up as digits only, so "98765 43210" and "9876543210" are one customer
+    static String normalizePhone(String phone) {
+        return phone == null ? "" : phone.replaceAll("\\D", "");
+    }
+
+    /**
+     * The customer with this phone number, for filling in the booking form,
+     * or null if they have not booked before. Repeat customers are usually
+     * still in the recent-customers cache; otherwise it is one lookup on the
+     * unique phone index.
+     */
+    public Customer findCustomer(String phone) {
+        phone = normalizePhone(phone);
+        synchronized (recentCustomers) {
+            Customer cached = recentCustomers.get(phone);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        try {
+            return loadCustomer(phone);
+        } catch (SQLException e) {
+            System.err.println("Error looking up customer: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The customer's orders, newest first, read through the orders'
+     * customer index (one read per shard, side by side). Empty if the phone
+     * number is unknown.
+     */
+    public ArrayList<Order> getCustomerBookings(String phone) {
+        Customer customer = findCustomer(phone);
+        if (customer == null) {
+            return new ArrayList<>();
+        }
+        return ordersNewestFirst("o.customer_id = ?", String.valueOf(customer.id()));
+    }
+
+    /**
+     * The customer to book under, without writing anything: the known
+     * customer if the name and email match what is on file, otherwise the
+     * given details with ID 0, for the linker to save once the order has
+     * committed. An empty email keeps the one on file.
+     */
+    private Customer customerFor(String name, String phone, String email) throws SQLException {
+        phone = normalizePhone(phone);
+        Customer known;
+        synchronized (recentCustomers) {
+            known = recentCustomers.get(phone);
+        }
+        if (known == null) {
+            known = loadCustomer(phone);
+        }
+        boolean noEmail = email == null || email.isEmpty();
+        if (known != null && known.name().equals(name) && (noEmail || email.equals(known.email()))) {
+            return known;
+        }
+        return new Customer(0, name, phone, noEmail ? null : email);
+    }
+
+    private void scheduleCustomerLinking(int shard) {
+        if (!shardsToLink.add(shard)) {
+            return;
+        }
+        try {
+            customerLinker.execute(this::linkPendingCustomers);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the next start links the orders
+        }
+    }
+
+    // Runs on the linker thread with its own connections; a shard that is busy is tried again a second later
+    private void linkPendingCustomers() {
+        for (int shard : new ArrayList<>(shardsToLink)) {
+            shardsToLink.remove(shard);
+            try (Connection writer = shard == 0 ? openCatalogWriter() : ShardRouter.open(shard)) {
+                linkCustomers(writer);
+            } catch (SQLException e) {
+                System.err.println("Error linking orders to customers: " + e.getMessage());
+                shardsToLink.add(shard);
+                try {
+                    customerLinker.schedule(this::linkPendingCustomers, 1, TimeUnit.SECONDS);
+                } catch (RejectedExecutionException shuttingDown) {
+                    // The next start links the orders
+                }
+            }
+        }
+    }
+
+    private Customer loadCustomer(String phone) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT id, name, phone, email FROM customers WHERE phone = ?")) {
+            pstmt.setString(1, phone);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Customer customer = new Customer(rs.getInt("id"), rs.getString("name"), rs.getString("phone"),
+                        rs.getString("email"));
+                synchronized (recentCustomers) {
+                    recentCustomers.put(phone, customer);
+                }
+                return customer;
+            }
+        }
+    }
+
+    // --- ORDER LOOKUP ---
+
+    private static final String ORDER_QUERY =
+            "SELECT o.id, o.customer_name, o.phone, o.total, o.status, o.order_time, " +
+            "m.name AS movie, t.name AS theatre, b.booking_date, b.seat_number " +
+            "FROM orders o " +
+            "JOIN bookings b ON b.order_id = o.id " +
+            "JOIN movies m ON b.movie_id = m.id " +
+            "JOIN theatres t ON b.theatre_id = t.id ";
+
+    // Returns the order with all of its seats (cancelled ones included), or null if it does not exist
+    public Order getOrder(int orderId) {
+        orderId = currentOrderId(orderId);
+        int shard = shards.shardOfId(orderId);
+        if (shard < 0) {
+            return null;
+        }
+        ArrayList<Order> orders = queryOrders(shards.get(shard),
+                ORDER_QUERY + "WHERE o.id = ? ORDER BY b.seat_number", String.valueOf(orderId));
+        return orders.isEmpty() ? null : orders.get(0);
+    }
+
+    // The order's ID now, following a move to another shard (see rebalanceShards)
+    private int currentOrderId(int orderId) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT new_id FROM moved_orders WHERE old_id = ?")) {
+            pstmt.setInt(1, orderId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : orderId;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error looking up moved order: " + e.getMessage());
+            return orderId;
+        }
+    }
+
+    // All orders placed with the given phone number, newest first
+    public ArrayList<Order> getOrdersByPhone(String phone) {
+        return ordersNewestFirst("o.phone = ?", normalizePhone(phone));
+    }
+
+    // Orders matching the condition on every shard, merged newest first
+    private ArrayList<Order> ordersNewestFirst(String condition, String parameter) {
+        ArrayList<Order> orders = readShards(shards.all(), shard -> queryOrders(shard,
+                ORDER_QUERY + "WHERE " + condition + " ORDER BY o.id DESC, b.seat_number", parameter));
+        if (shards.getShardCount() > 1) {
+            Comparator<String> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+            orders.sort(Comparator.comparing(Order::orderTime, nullsFirst)
+                    .thenComparingInt(Order::id).reversed());
+        }
+        return orders;
+    }
+
+    private ArrayList<Order> queryOrders(Connection shard, String sql, String parameter) {
+        ArrayList<Order> orders = new ArrayList<>();
+        try (PreparedStatement pstmt = shard.prepareStatement(sql)) {
+            pstmt.setString(1, parameter);
+            ResultSet rs = pstmt.executeQuery();
+            // Rows come grouped by order; an order is built once all of its seats are read
+            boolean more = rs.next();
+            while (more) {
+                int id = rs.getInt("id");
+                String customerName = rs.getString("customer_name");
+                String orderPhone = rs.getString("phone");
+                double total = rs.getDouble("total");
+                String status = rs.getString("status");
+                String orderTime = rs.getString("order_time");
+                String movie = rs.getString("movie");
+                String theatre = rs.getString("theatre");
+                String date = rs.getString("booking_date");
+                ArrayList<String> seats = new ArrayList<>();
+                do {
+                    seats.add(rs.getString("seat_number"));
+                    more = rs.next();
+                } while (more && rs.getInt("id") == id);
+                orders.add(new Order(id, customerName, orderPhone, total, status, orderTime, movie, theatre,
+                        date, seats));
+            }
+            rs.close();
+        } catch (SQLException e) {
+            System.err.println("Error loading orders: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return orders;
+    }
+
+    /**
+     * Every booking on every shard, newest show date first. Each shard is
+     * read in that order and the results are merged. May lag the live data
+     * by up to the snapshot staleness bound (see SnapshotReader).
+     */
+    public ArrayList<Booking> getAllBookings() {
+        ArrayList<Booking> bookings;
+        try (SnapshotReader.Lease lease = snapshotReader.lease()) {
+            bookings = readShards(lease.shards(), shard -> {
+                ArrayList<Booking> shardRows = new ArrayList<>();
+                try (Statement stmt = shard.createStatement();
+                     ResultSet rs = stmt.executeQuery(
+                            "SELECT b.id, b.order_id, m.name as movie, t.name as theatre, b.booking_date, " +
+                            "s.show_time, b.seat_number, o.customer_name, o.phone, b.price, b.status, b.booking_time " +
+                            "FROM bookings b " +
+                            "JOIN orders o ON b.order_id = o.id " +
+                            "JOIN movies m ON b.movie_id = m.id " +
+                            "JOIN theatres t ON b.theatre_id = t.id " +
+                            "LEFT JOIN shows s ON b.show_id = s.id " +
+                            "ORDER BY b.booking_date DESC, b.booking_time DESC")) {
+
+                    while (rs.next()) {
+                        shardRows.add(new Booking(
+                                rs.getInt("id"),
+                                rs.getInt("order_id"),
+                                rs.getString("movie"),
+                                rs.getString("theatre"),
+                                rs.getString("booking_date"),
+                                rs.getString("show_time"),
+                                rs.getString("seat_number"),
+                                rs.getString("customer_name"),
+                                rs.getString("phone"),
+                                rs.getObject("price") == null ? null : rs.getDouble("price"),
+                                rs.getString("status"),
+                                rs.getString("booking_time")));
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Error loading bookings: " + e.getMessage());
+                    e.printStackTrace();
+                }
+                return shardRows;
+            });
+        }
+        if (shards.getShardCount() > 1) {
+            Comparator<String> nullsFirst = Comparator.nullsFirst(Comparator.naturalOrder());
+            bookings.sort(Comparator.comparing(Booking::date, nullsFirst)
+                    .thenComparing(Booking::bookingTime, nullsFirst).reversed());
+        }
+        return bookings;
+    }
+
+    /**
+     * Runs the read on every shard at once, each on its own background
+     * thread, and returns the results in shard order. Each shard has its own
+     * connection, so the reads do not wait for each other. A single shard is
+     * read on the calling thread.
+     */
+    private <T> ArrayList<T> readShards(List<Connection> shardList, Function<Connection, List<T>> read) {
+        ArrayList<T> rows = new ArrayList<>();
+        if (shardList.size() == 1) {
+            rows.addAll(read.apply(shardList.get(0)));
+            return rows;
+        }
+        ArrayList<Future<List<T>>> results = new ArrayList<>();
+        for (Connection shard : shardList) {
+            results.add(shardReaders.submit(() -> read.apply(shard)));
+        }
+        for (Future<List<T>> result : results) {
+            try {
+                rows.addAll(result.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                System.err.println("Error reading shard: " + e.getCause());
+            }
+        }
+        return rows;
+    }
+
+    // The SQLite driver does not support getGeneratedKeys(), so ask the connection directly
+    private int lastInsertId(Connection shard) throws SQLException {
+        try (Statement stmt = shard.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+            return rs.getInt(1);
         }
     }
 
     public void closeConnection() {
         try {
+            shardReaders.shutdown();
+            journalReplayer.shutdown();
+            waitlistMatcher.shutdown();
+            customerLinker.shutdown();
+            pricingRefresher.shutdown();
+            if (snapshotReader != null) {
+                snapshotReader.close();
+            }
+            if (shards != null) {
+                shards.close();
+            }
             if (conn != null && !conn.isClosed()) {
                 conn.close();
                 System.out.println("Database connection closed.");
@@ -0,0 +1,140 @@
+package mtba;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Half-open intervals [start, end) with a value each, kept in a treap
+ * ordered by start. Every node also knows the largest end in its subtree,
+ * so an overlap query skips whole subtrees that end before the query
+ * starts: O(log n + k) expected for k overlaps, whatever order the
+ * intervals are added in.
+ */
+public class IntervalTree<T> {
+
+    private static final class Node<T> {
+        final long start;
+        final long end;
+        final T value;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Node<T> left;
+        Node<T> right;
+        long maxEnd;
+
+        Node(long start, long end, T value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+            this.maxEnd = end;
+        }
+    }
+
+    private Node<T> root;
+    private int size;
+
+    public void insert(long start, long end, T value) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Empty interval [" + start + ", " + end + ")");
+        }
+        root = insert(root, new Node<>(start, end, value));
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The overlapping interval that starts first, or null if [start, end) is free
+    public T firstOverlap(long start, long end) {
+        Node<T> node = firstOverlap(root, start, end);
+        return node != null ? node.value : null;
+    }
+
+    // Every interval overlapping [start, end), by start
+    public List<T> overlapping(long start, long end) {
+        ArrayList<T> values = new ArrayList<>();
+        collect(root, start, end, values);
+        return values;
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.start < node.start) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> firstOverlap(Node<T> node, long start, long end) {
+        if (node == null || node.maxEnd <= start) {
+            return null;
+        }
+        Node<T> left = firstOverlap(node.left, start, end);
+        if (left != null) {
+            return left;
+        }
+        if (node.start >= end) {
+            // This node and everything to its right start too late
+            return null;
+        }
+        if (node.end > start) {
+            return node;
+        }
+        return firstOverlap(node.right, start, end);
+    }
+
+    private void collect(Node<T> node, long start, long end, List<T> values) {
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        collect(node.left, start, end, values);
+        if (node.start >= end) {
+            return;
+        }
+        if (node.end > start) {
+            values.add(node.value);
+        }
+        collect(node.right, start, end, values);
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private void update(Node<T> node) {
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+}
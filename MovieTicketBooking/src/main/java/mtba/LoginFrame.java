@@ -98,18 +98,23 @@ public class LoginFrame extends JFrame {
         }
 
         // --- AUTHENTICATION LOGIC using DatabaseManager ---
-        if (dbManager.adminLogin(username, password)) {
-            // Admin Login successful (Role is checked inside dbManager.adminLogin)
+        long lockedMillis = dbManager.getLoginLockoutRemaining(username);
+        if (lockedMillis > 0) {
+            JOptionPane.showMessageDialog(this, "Too many failed attempts. Try again in "
+                + (lockedMillis + 999) / 1000 + " seconds.", "Login Locked", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        String role = dbManager.authenticate(username, password);
+        if ("admin".equalsIgnoreCase(role)) {
             dispose();
             new AdminFrame(); 
-        } 
-        // Simple User Login (Any non-admin credential works as a user)
-        else {
-             // We can check if the user exists generally, but for simplicity here:
-             // if credentials are not admin, treat as a regular user for booking.
-             // You can add more complex user-level authentication here if needed.
-             dispose();
-             new MovieTicketBookingApp(); // Open User booking window
+        } else if (role != null) {
+            dispose();
+            new MovieTicketBookingApp(); // Open User booking window
+        } else {
+            passwordField.setText("");
+            JOptionPane.showMessageDialog(this, "Invalid username or password.", "Login Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
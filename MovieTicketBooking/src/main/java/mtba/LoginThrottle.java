@@ -0,0 +1,109 @@
+package mtba;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-username lockout after repeated failed logins. Usernames are matched
+ * exactly, as at login; otherwise failures on "Admin" would lock out
+ * "admin". Each run of MAX_FAILURES failures locks the account for a period
+ * that doubles with every further run (capped at MAX_LOCKOUT_MS); a
+ * successful login resets it. Locked attempts are refused before any
+ * password hashing happens, so a brute-force run cannot keep the CPU busy
+ * either.
+ *
+ * A username with no failure and no lockout for FORGET_AFTER_MS is
+ * forgotten, so attempts on made-up usernames do not pile up: forgotten
+ * entries are swept out on access, at most every SWEEP_INTERVAL_MS or as
+ * soon as more than MAX_TRACKED usernames are held.
+ */
+public class LoginThrottle {
+
+    static final int MAX_FAILURES = 5;
+    static final long BASE_LOCKOUT_MS = 30_000;
+    static final long MAX_LOCKOUT_MS = 15 * 60_000;
+    static final long FORGET_AFTER_MS = MAX_LOCKOUT_MS;
+    static final long SWEEP_INTERVAL_MS = 60_000;
+    static final int MAX_TRACKED = 10_000;
+
+    private static final class Attempts {
+        int failures;
+        int lockouts;
+        long lockedUntil;
+        long lastFailureAt;
+
+        boolean isForgotten(long now) {
+            return now - Math.max(lastFailureAt, lockedUntil) >= FORGET_AFTER_MS;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Attempts> attempts = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private volatile long lastSweep;
+
+    public LoginThrottle() {
+        this(System::currentTimeMillis);
+    }
+
+    // For tests: the clock gives the current time in milliseconds
+    LoginThrottle(LongSupplier clock) {
+        this.clock = clock;
+        this.lastSweep = clock.getAsLong();
+    }
+
+    // Milliseconds until the username may try again, 0 if it is not locked
+    public long remainingLockout(String username) {
+        long now = clock.getAsLong();
+        sweepIfDue(now);
+        Attempts a = attempts.get(username);
+        if (a == null) {
+            return 0;
+        }
+        synchronized (a) {
+            return Math.max(0, a.lockedUntil - now);
+        }
+    }
+
+    public void recordFailure(String username) {
+        long now = clock.getAsLong();
+        sweepIfDue(now);
+        Attempts a = attempts.computeIfAbsent(username, k -> new Attempts());
+        synchronized (a) {
+            if (a.isForgotten(now)) {
+                a.failures = 0;
+                a.lockouts = 0;
+            }
+            a.lastFailureAt = now;
+            a.failures++;
+            if (a.failures >= MAX_FAILURES) {
+                long lockout = Math.min(MAX_LOCKOUT_MS, BASE_LOCKOUT_MS << Math.min(a.lockouts, 10));
+                a.lockedUntil = now + lockout;
+                a.lockouts++;
+                a.failures = 0;
+                System.err.println("Login locked for '" + username + "' for " + lockout / 1000 + "s");
+            }
+        }
+    }
+
+    public void recordSuccess(String username) {
+        attempts.remove(username);
+    }
+
+    // Usernames currently held, forgotten or not
+    int trackedCount() {
+        return attempts.size();
+    }
+
+    private void sweepIfDue(long now) {
+        if (now - lastSweep < SWEEP_INTERVAL_MS && attempts.size() <= MAX_TRACKED) {
+            return;
+        }
+        lastSweep = now;
+        attempts.entrySet().removeIf(entry -> {
+            Attempts a = entry.getValue();
+            synchronized (a) {
+                return a.isForgotten(now);
+            }
+        });
+    }
+}
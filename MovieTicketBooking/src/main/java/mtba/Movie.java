@@ -0,0 +1,14 @@
+package mtba;
+
+/**
+ * A catalog movie. Combo boxes hold these directly (toString() is the
+ * display text), so the booking screen hands the ID back to
+ * DatabaseManager instead of a label that has to be parsed.
+ */
+public record Movie(int id, String name, String genre, int duration, String rating) {
+
+    @Override
+    public String toString() {
+        return name + " (" + genre + ", " + duration + " min)";
+    }
+}
@@ -0,0 +1,222 @@
+package mtba;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * In-memory type-ahead index over movie names and genres. Two structures
+ * are kept:
+ *
+ * <ul>
+ * <li>a sorted word map (used as a prefix trie): every word of the name and
+ * genre points at the movies containing it, so "adv" finds "The Adventure
+ * Begins" with one range lookup;</li>
+ * <li>trigram postings, so misspelt queries ("advnture") still find titles
+ * sharing most of their three-letter groups.</li>
+ * </ul>
+ *
+ * A movie scores 2 per query word that prefixes one of its words, plus the
+ * share of the query's trigrams it contains, plus 3 if its name starts with
+ * the whole query. Movies with no prefix hit need at least 40% of the
+ * trigrams. Searches and additions are synchronized; both are cheap.
+ */
+public class MovieSearchIndex {
+
+    private static final double PREFIX_SCORE = 2.0;
+    private static final double NAME_START_SCORE = 3.0;
+    private static final double MIN_TRIGRAM_SHARE = 0.4;
+
+    // Growable int array of movie positions; avoids boxing on the hot search path
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    private final ArrayList<Movie> movies = new ArrayList<>();
+    private final ArrayList<String> names = new ArrayList<>();
+    // word -> movies (by position in the lists above) containing it
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+    private final HashMap<String, Postings> trigrams = new HashMap<>();
+    // normalized name + position, for listing in name order when the query is empty
+    private final TreeMap<String, Integer> byName = new TreeMap<>();
+    // Position of each movie in name order, for cheap tie-breaks; rebuilt after additions
+    private int[] nameRank = new int[0];
+    // Per-movie scratch space reused by every search; only the touched entries are cleared afterwards
+    private double[] scores = new double[0];
+    private double[] trigramScores = new double[0];
+    private boolean[] prefixHit = new boolean[0];
+    private int[] seenForWord = new int[0];
+    private int[] touched = new int[0];
+
+    public synchronized void add(Movie movie) {
+        int doc = movies.size();
+        movies.add(movie);
+        String normalizedName = normalize(movie.name());
+        String genre = movie.genre();
+        names.add(normalizedName);
+        byName.put(normalizedName + '\u0000' + doc, doc);
+        nameRank = null;
+
+        String text = genre == null ? normalizedName : normalizedName + " " + normalize(genre);
+        for (String word : new LinkedHashSet<>(split(text))) {
+            words.computeIfAbsent(word, k -> new Postings()).add(doc);
+        }
+        for (String trigram : trigramsOf(text)) {
+            trigrams.computeIfAbsent(trigram, k -> new Postings()).add(doc);
+        }
+    }
+
+    public synchronized int size() {
+        return movies.size();
+    }
+
+    /**
+     * The best matches for the query, best first (ties in name order). An
+     * empty query lists the first movies by name.
+     */
+    public synchronized ArrayList<Movie> search(String query, int limit) {
+        ArrayList<Movie> results = new ArrayList<>();
+        String normalized = normalize(query == null ? "" : query);
+        if (normalized.isEmpty()) {
+            for (int doc : byName.values()) {
+                if (results.size() == limit) {
+                    break;
+                }
+                results.add(movies.get(doc));
+            }
+            return results;
+        }
+
+        if (scores.length < movies.size()) {
+            int capacity = Math.max(movies.size(), scores.length * 2);
+            scores = new double[capacity];
+            trigramScores = new double[capacity];
+            prefixHit = new boolean[capacity];
+            seenForWord = new int[capacity];
+            touched = new int[capacity];
+        }
+        // Every movie that got any score, each listed once
+        int touchedCount = 0;
+
+        // A doc counts once per query word, however many of its words share the prefix
+        int wordNumber = 0;
+        for (String word : new LinkedHashSet<>(split(normalized))) {
+            wordNumber++;
+            for (Postings postings : words.subMap(word, word + Character.MAX_VALUE).values()) {
+                for (int i = 0; i < postings.size; i++) {
+                    int doc = postings.docs[i];
+                    if (seenForWord[doc] == wordNumber) {
+                        continue;
+                    }
+                    seenForWord[doc] = wordNumber;
+                    if (scores[doc] == 0) {
+                        touched[touchedCount++] = doc;
+                    }
+                    scores[doc] += PREFIX_SCORE;
+                    prefixHit[doc] = true;
+                }
+            }
+        }
+
+        LinkedHashSet<String> queryTrigrams = trigramsOf(normalized);
+        double share = 1.0 / queryTrigrams.size();
+        for (String trigram : queryTrigrams) {
+            Postings postings = trigrams.get(trigram);
+            if (postings == null) {
+                continue;
+            }
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (scores[doc] == 0 && trigramScores[doc] == 0) {
+                    touched[touchedCount++] = doc;
+                }
+                trigramScores[doc] += share;
+            }
+        }
+
+        if (nameRank == null) {
+            nameRank = new int[movies.size()];
+            int rank = 0;
+            for (int doc : byName.values()) {
+                nameRank[doc] = rank++;
+            }
+        }
+        int[] ranks = nameRank;
+        double[] scores = this.scores;
+        // Keep the best `limit` candidates; the head of the queue is the weakest
+        Comparator<Integer> weakestFirst = (a, b) -> scores[a] != scores[b]
+                ? Double.compare(scores[a], scores[b]) : Integer.compare(ranks[b], ranks[a]);
+        PriorityQueue<Integer> best = new PriorityQueue<>(weakestFirst);
+        for (int t = 0; t < touchedCount; t++) {
+            int doc = touched[t];
+            if (!prefixHit[doc] && trigramScores[doc] < MIN_TRIGRAM_SHARE) {
+                continue;
+            }
+            scores[doc] += trigramScores[doc];
+            if (names.get(doc).startsWith(normalized)) {
+                scores[doc] += NAME_START_SCORE;
+            }
+            if (best.size() < limit) {
+                best.add(doc);
+            } else if (limit > 0 && weakestFirst.compare(doc, best.peek()) > 0) {
+                best.poll();
+                best.add(doc);
+            }
+        }
+        for (int t = 0; t < touchedCount; t++) {
+            int doc = touched[t];
+            scores[doc] = 0;
+            trigramScores[doc] = 0;
+            prefixHit[doc] = false;
+            seenForWord[doc] = 0;
+        }
+        while (!best.isEmpty()) {
+            results.add(movies.get(best.poll()));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    // Lower case, accents stripped, anything but letters and digits turned into single spaces
+    static String normalize(String text) {
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    private static List<String> split(String normalized) {
+        ArrayList<String> parts = new ArrayList<>();
+        for (String part : normalized.split(" ")) {
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
+        }
+        return parts;
+    }
+
+    // Each word padded as "  word " so starts of words weigh more than their middles
+    private static LinkedHashSet<String> trigramsOf(String normalized) {
+        LinkedHashSet<String> grams = new LinkedHashSet<>();
+        for (String word : split(normalized)) {
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(padded.substring(i, i + 3));
+            }
+        }
+        return grams;
+    }
+}
@@ -3,11 +3,20 @@ package mtba;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 
 public class MovieTicketBookingApp extends JFrame {
     private static final long serialVersionUID = 1L; 
@@ -21,18 +30,27 @@ public class MovieTicketBookingApp extends JFrame {
     private static final Font MODERN_FONT_BOLD_16 = new Font("Segoe UI", Font.BOLD, 16);
     private static final Font MODERN_FONT_PLAIN_14 = new Font("Segoe UI", Font.PLAIN, 14);
     private static final Font MODERN_FONT_TITLE_20 = new Font("Segoe UI", Font.BOLD, 20);
+    // Digits in a mobile number; customer details are looked up once the phone field has this many
+    private static final int MOBILE_DIGITS = 10;
     // --------------------------------------
 
     private DatabaseManager dbManager; 
-    private JComboBox<String> movieCombo, theatreCombo, dateCombo;
+    private JComboBox<Movie> movieCombo;
+    private JComboBox<Theatre> theatreCombo;
+    private JComboBox<String> dateCombo;
+    private JComboBox<ShowTime> showCombo;
+    private JTextField movieSearchField;
+    // Set while loadMovies() refills the movie list, whose selection events would each reload the dates
+    private boolean refillingMovies;
     private JPanel seatsPanel;
     private JButton[][] seatButtons;
+    // Hall of the theatre whose seats are shown
+    private SeatLayout seatLayout = SeatLayout.STANDARD;
     private ArrayList<String> selectedSeats;
     private JLabel totalLabel;
 
-    private static final int ROWS = 8;
-    private static final int COLS = 10;
-    private static final double TICKET_PRICE = 250.0;
+    // Movies listed in the combo box per search (and before anything is typed)
+    private static final int MOVIE_RESULTS = 25;
 
     public MovieTicketBookingApp() {
         setTitle("Movie Ticket Booking System - User Booking");
@@ -79,7 +97,7 @@ public class MovieTicketBookingApp extends JFrame {
         setLayout(new BorderLayout(15, 15));
         
         // --- Top Panel - Selection (White Card) ---
-        JPanel topPanel = new JPanel(new GridLayout(4, 2, 15, 10));
+        JPanel topPanel = new JPanel(new GridLayout(6, 2, 15, 10));
         topPanel.setBackground(Color.WHITE);
         topPanel.setBorder(BorderFactory.createCompoundBorder(
             new EmptyBorder(15, 15, 10, 15), 
@@ -87,6 +105,33 @@ public class MovieTicketBookingApp extends JFrame {
         ));
 
         // Labels
+        JLabel searchLabel = new JLabel("Search Movie:");
+        searchLabel.setFont(MODERN_FONT_BOLD_16);
+        searchLabel.setForeground(FOREGROUND_DARK);
+        topPanel.add(searchLabel);
+
+        // Type-ahead: the movie list below is narrowed to the best matches as the cashier types
+        movieSearchField = new JTextField();
+        movieSearchField.setFont(MODERN_FONT_PLAIN_14);
+        movieSearchField.setBorder(new LineBorder(NEUTRAL_GRAY));
+        movieSearchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                loadMovies();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                loadMovies();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                loadMovies();
+            }
+        });
+        topPanel.add(movieSearchField);
+
         JLabel movieLabel = new JLabel("Select Movie:");
         movieLabel.setFont(MODERN_FONT_BOLD_16);
         movieLabel.setForeground(FOREGROUND_DARK);
@@ -120,14 +165,38 @@ public class MovieTicketBookingApp extends JFrame {
         dateCombo.setFont(MODERN_FONT_PLAIN_14);
         dateCombo.setBackground(Color.WHITE);
         dateCombo.setBorder(new LineBorder(NEUTRAL_GRAY));
-        loadDates();
         topPanel.add(dateCombo);
 
+        JLabel showLabel = new JLabel("Select Show Time:");
+        showLabel.setFont(MODERN_FONT_BOLD_16);
+        showLabel.setForeground(FOREGROUND_DARK);
+        topPanel.add(showLabel);
+
+        showCombo = new JComboBox<>();
+        showCombo.setFont(MODERN_FONT_PLAIN_14);
+        showCombo.setBackground(Color.WHITE);
+        showCombo.setBorder(new LineBorder(NEUTRAL_GRAY));
+        topPanel.add(showCombo);
+
+        dateCombo.addActionListener(e -> loadShowTimes());
+        loadDates();
+        movieCombo.addActionListener(e -> {
+            if (!refillingMovies) {
+                loadDates();
+            }
+        });
+        theatreCombo.addActionListener(e -> loadDates());
+
         // Load Seats Button (Yellow Accent)
         JButton loadSeatsBtn = new JButton("Load Seats");
         styleModernButton(loadSeatsBtn, ACCENT_YELLOW, FOREGROUND_DARK); 
         loadSeatsBtn.addActionListener(e -> loadSeats());
-        topPanel.add(new JLabel());
+
+        // Best Seats Button (Neutral style, picks a block for the cashier)
+        JButton bestSeatsBtn = new JButton("Best Seats for N");
+        styleModernButton(bestSeatsBtn, NEUTRAL_GRAY, FOREGROUND_DARK);
+        bestSeatsBtn.addActionListener(e -> selectBestSeats());
+        topPanel.add(bestSeatsBtn);
         topPanel.add(loadSeatsBtn);
 
         add(topPanel, BorderLayout.NORTH);
@@ -142,7 +211,7 @@ public class MovieTicketBookingApp extends JFrame {
         screenPanel.add(screenLabel);
 
         // --- Center Panel - Seats ---
-        seatsPanel = new JPanel(new GridLayout(ROWS, COLS, 5, 5));
+        seatsPanel = new JPanel(new GridLayout(seatLayout.getRows(), seatLayout.getCols(), 5, 5));
         seatsPanel.setBackground(Color.WHITE);
         seatsPanel.setBorder(BorderFactory.createTitledBorder(
             new LineBorder(NEUTRAL_GRAY),
@@ -187,25 +256,66 @@ public class MovieTicketBookingApp extends JFrame {
         viewBookingsBtn.addActionListener(e -> viewBookings());
         bottomPanel.add(viewBookingsBtn);
 
+        // Cancel Booking Button (Neutral style)
+        JButton cancelBookingBtn = new JButton("Cancel Booking");
+        styleModernButton(cancelBookingBtn, NEUTRAL_GRAY, FOREGROUND_DARK);
+        cancelBookingBtn.addActionListener(e -> cancelBookings());
+        bottomPanel.add(cancelBookingBtn);
+
+        // Waitlist Button (Neutral style)
+        JButton waitlistBtn = new JButton("Waitlist");
+        styleModernButton(waitlistBtn, NEUTRAL_GRAY, FOREGROUND_DARK);
+        waitlistBtn.addActionListener(e -> showWaitlist());
+        bottomPanel.add(waitlistBtn);
+
+        // Offline Sync Button (only when bookings can be journaled offline)
+        if (dbManager.isOfflineBookingEnabled()) {
+            JButton syncBtn = new JButton("Sync Offline Bookings");
+            styleModernButton(syncBtn, NEUTRAL_GRAY, FOREGROUND_DARK);
+            syncBtn.addActionListener(e -> syncOfflineBookings());
+            bottomPanel.add(syncBtn);
+        }
+
         add(bottomPanel, BorderLayout.SOUTH);
     }
     
-    // --- Data Loading (Unchanged) ---
+    // --- Data Loading ---
+    // Runs on every keystroke in the search field; the dates are reloaded once, and only if the selected movie changed
     private void loadMovies() {
-        ArrayList<String> movies = dbManager.getMovies();
-        for (String movie : movies) {
-            movieCombo.addItem(movie);
+        String query = movieSearchField.getText();
+        Object selected = movieCombo.getSelectedItem();
+        refillingMovies = true;
+        try {
+            movieCombo.removeAllItems();
+            for (Movie movie : dbManager.searchMovies(query, MOVIE_RESULTS)) {
+                movieCombo.addItem(movie);
+            }
+        } finally {
+            refillingMovies = false;
+        }
+        if (dateCombo != null && !Objects.equals(selected, movieCombo.getSelectedItem())) {
+            loadDates();
         }
     }
 
     private void loadTheatres() {
-        ArrayList<String> theatres = dbManager.getTheatres();
-        for (String theatre : theatres) {
+        ArrayList<Theatre> theatres = dbManager.getTheatres();
+        for (Theatre theatre : theatres) {
             theatreCombo.addItem(theatre);
         }
     }
 
+    // Show dates from the theatre's schedule; theatres without one play every movie for the next 7 days
     private void loadDates() {
+        Movie movie = (Movie) movieCombo.getSelectedItem();
+        Theatre theatre = (Theatre) theatreCombo.getSelectedItem();
+        dateCombo.removeAllItems();
+        if (movie != null && theatre != null && dbManager.hasSchedule(theatre)) {
+            for (String date : dbManager.getShowDates(movie, theatre)) {
+                dateCombo.addItem(date);
+            }
+            return;
+        }
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         for (int i = 0; i < 7; i++) {
             LocalDate date = LocalDate.now().plusDays(i);
@@ -213,26 +323,46 @@ public class MovieTicketBookingApp extends JFrame {
         }
     }
     
+    // Shows of the selected movie, theatre and date; a theatre without a schedule has one all-day show
+    private void loadShowTimes() {
+        Movie movie = (Movie) movieCombo.getSelectedItem();
+        Theatre theatre = (Theatre) theatreCombo.getSelectedItem();
+        String date = (String) dateCombo.getSelectedItem();
+        showCombo.removeAllItems();
+        if (movie == null || theatre == null || date == null) {
+            return;
+        }
+        for (ShowTime show : dbManager.getShowTimes(movie, theatre, date)) {
+            showCombo.addItem(show);
+        }
+    }
+
     // --- Seat Logic (Visibility Fixed) ---
     private void loadSeats() {
         if (movieCombo.getSelectedItem() == null || theatreCombo.getSelectedItem() == null) {
             JOptionPane.showMessageDialog(this, "Please select movie and theatre first!");
             return;
         }
+        if (showCombo.getSelectedItem() == null) {
+            JOptionPane.showMessageDialog(this, "This movie has no upcoming shows at this theatre.");
+            return;
+        }
         seatsPanel.removeAll();
-        seatButtons = new JButton[ROWS][COLS];
+        seatLayout = dbManager.getSeatLayout((Theatre) theatreCombo.getSelectedItem());
+        seatsPanel.setLayout(new GridLayout(seatLayout.getRows(), seatLayout.getCols(), 5, 5));
+        seatButtons = new JButton[seatLayout.getRows()][seatLayout.getCols()];
         selectedSeats.clear();
         updateTotal();
 
-        String movie = (String) movieCombo.getSelectedItem();
-        String theatre = ((String) theatreCombo.getSelectedItem()).split(" - ")[0]; 
-        String date = (String) dateCombo.getSelectedItem();
+        Movie movie = (Movie) movieCombo.getSelectedItem();
+        Theatre theatre = (Theatre) theatreCombo.getSelectedItem();
+        ShowTime show = (ShowTime) showCombo.getSelectedItem();
 
-        ArrayList<String> bookedSeats = dbManager.getBookedSeats(movie, theatre, date);
+        ArrayList<String> bookedSeats = dbManager.getBookedSeats(movie, theatre, show);
 
-        for (int i = 0; i < ROWS; i++) {
+        for (int i = 0; i < seatLayout.getRows(); i++) {
             char row = (char) ('A' + i);
-            for (int j = 0; j < COLS; j++) {
+            for (int j = 0; j < seatLayout.getSeatsInRow(i); j++) {
                 int seatNum = j + 1;
                 String seatLabel = row + String.valueOf(seatNum);
                 JButton seatBtn = new JButton(seatLabel);
@@ -275,8 +405,72 @@ public class MovieTicketBookingApp extends JFrame {
         updateTotal();
     }
 
+    private void selectBestSeats() {
+        if (seatButtons == null || showCombo.getSelectedItem() == null) {
+            JOptionPane.showMessageDialog(this, "Please load seats first!");
+            return;
+        }
+        String input = JOptionPane.showInputDialog(this, "Number of seats:", "Best Available Seats",
+            JOptionPane.QUESTION_MESSAGE);
+        if (input == null) {
+            return;
+        }
+        int partySize;
+        try {
+            partySize = Integer.parseInt(input.trim());
+        } catch (NumberFormatException e) {
+            partySize = 0;
+        }
+        if (partySize <= 0) {
+            JOptionPane.showMessageDialog(this, "Please enter a positive number of seats.");
+            return;
+        }
+
+        Movie movie = (Movie) movieCombo.getSelectedItem();
+        Theatre theatre = (Theatre) theatreCombo.getSelectedItem();
+        ShowTime show = (ShowTime) showCombo.getSelectedItem();
+
+        ArrayList<String> bestSeats = dbManager.findBestSeats(movie, theatre, show, partySize);
+        if (bestSeats.isEmpty()) {
+            int option = JOptionPane.showConfirmDialog(this,
+                "Not enough seats available for " + partySize + " people.\n"
+                + "Put them on the waitlist? When seats are released they are held for them to confirm,\n"
+                + "at the price quoted now.",
+                "Show Full", JOptionPane.YES_NO_OPTION);
+            if (option == JOptionPane.YES_OPTION) {
+                joinWaitlist(partySize);
+            }
+            return;
+        }
+
+        // Replace the current selection with the suggested block
+        for (String seat : new ArrayList<>(selectedSeats)) {
+            JButton btn = seatButton(seat);
+            if (btn != null) {
+                toggleSeat(btn, seat);
+            }
+        }
+        for (String seat : bestSeats) {
+            JButton btn = seatButton(seat);
+            if (btn != null && btn.isEnabled()) {
+                toggleSeat(btn, seat);
+            }
+        }
+    }
+
+    private JButton seatButton(String seatLabel) {
+        int index = seatLayout.indexOf(seatLabel);
+        return index < 0 ? null : seatButtons[index / seatLayout.getCols()][index % seatLayout.getCols()];
+    }
+
     private void updateTotal() {
-        double total = selectedSeats.size() * TICKET_PRICE;
+        double total = 0;
+        if (!selectedSeats.isEmpty()) {
+            Movie movie = (Movie) movieCombo.getSelectedItem();
+            Theatre theatre = (Theatre) theatreCombo.getSelectedItem();
+            ShowTime show = (ShowTime) showCombo.getSelectedItem();
+            total = dbManager.quoteTotal(movie, theatre, show, selectedSeats);
+        }
         totalLabel.setText(String.format("Total: ₹%.2f", total));
     }
 
@@ -294,11 +488,36 @@ public class MovieTicketBookingApp extends JFrame {
         JTextField emailField = new JTextField();
         emailField.setFont(MODERN_FONT_PLAIN_14);
 
+        // Phone first: a repeat customer's name and email are filled in from it
+        CustomerFill customerFill = new CustomerFill(phoneField, nameField, emailField);
+        phoneField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                customerFill.phoneEdited();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                customerFill.phoneEdited();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                customerFill.phoneEdited();
+            }
+        });
+        phoneField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                customerFill.lookUp();
+            }
+        });
+
         JPanel panel = new JPanel(new GridLayout(3, 2, 5, 5));
-        panel.add(new JLabel("Name:")).setFont(MODERN_FONT_PLAIN_14);
-        panel.add(nameField);
         panel.add(new JLabel("Phone:")).setFont(MODERN_FONT_PLAIN_14);
         panel.add(phoneField);
+        panel.add(new JLabel("Name:")).setFont(MODERN_FONT_PLAIN_14);
+        panel.add(nameField);
         panel.add(new JLabel("Email:")).setFont(MODERN_FONT_PLAIN_14);
         panel.add(emailField);
 
@@ -308,27 +527,50 @@ public class MovieTicketBookingApp extends JFrame {
         if (option == JOptionPane.OK_OPTION) {
             String name = nameField.getText().trim();
             String phone = phoneField.getText().trim();
+            String email = emailField.getText().trim();
             if (name.isEmpty() || phone.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "Name and Phone are required!");
                 return;
             }
 
-            String movie = (String) movieCombo.getSelectedItem();
-            String theatre = ((String) theatreCombo.getSelectedItem()).split(" - ")[0];
-            String date = (String) dateCombo.getSelectedItem();
+            Movie movie = (Movie) movieCombo.getSelectedItem();
+            Theatre theatre = (Theatre) theatreCombo.getSelectedItem();
+            ShowTime show = (ShowTime) showCombo.getSelectedItem();
 
-            boolean success = dbManager.bookTickets(movie, theatre, date, selectedSeats, name, phone);
+            // Quote before booking: the booking itself raises occupancy for the next customer
+            double total = dbManager.quoteTotal(movie, theatre, show, selectedSeats);
+            int orderId = dbManager.bookTickets(movie, theatre, show, selectedSeats, name, phone, email);
 
-            if (success) {
+            if (orderId > 0) {
                 JOptionPane.showMessageDialog(this, "✅ Booking Successful!\n\n"
-                    + "Movie: " + movie + "\n"
-                    + "Theatre: " + theatre + "\n"
-                    + "Date: " + date + "\n"
+                    + "Order: #" + orderId + "\n"
+                    + "Movie: " + movie.name() + "\n"
+                    + "Theatre: " + theatre.name() + "\n"
+                    + "Date: " + show.date() + "\n"
+                    + "Show: " + show + "\n"
                     + "Seats: " + String.join(", ", selectedSeats) + "\n"
-                    + "Total: ₹" + String.format("%.2f", selectedSeats.size() * TICKET_PRICE) + "\n\n"
+                    + "Total: ₹" + String.format("%.2f", total) + "\n\n"
                     + "Customer: " + name, 
                     "Booking Confirmed", JOptionPane.INFORMATION_MESSAGE);
                 loadSeats();
+            } else if (orderId == DatabaseManager.BOOKED_OFFLINE) {
+                JOptionPane.showMessageDialog(this, "⚠ Booking Saved Offline\n\n"
+                    + "The database cannot be reached right now. The seats are held at this counter\n"
+                    + "and the booking will be confirmed automatically once it is back.\n\n"
+                    + "Movie: " + movie.name() + "\n"
+                    + "Theatre: " + theatre.name() + "\n"
+                    + "Date: " + show.date() + "\n"
+                    + "Show: " + show + "\n"
+                    + "Seats: " + String.join(", ", selectedSeats) + "\n"
+                    + "Total: ₹" + String.format("%.2f", total) + "\n\n"
+                    + "Customer: " + name,
+                    "Booking Saved Offline", JOptionPane.WARNING_MESSAGE);
+                loadSeats();
+            } else if (orderId == DatabaseManager.SEATS_UNAVAILABLE) {
+                JOptionPane.showMessageDialog(this, "❌ Some of the selected seats were just booked at another counter.\n"
+                    + "The seat map has been refreshed, please choose again.",
+                    "Seats Taken", JOptionPane.WARNING_MESSAGE);
+                loadSeats();
             } else {
                 JOptionPane.showMessageDialog(this, "❌ Booking Failed! Please try again.", 
                     "Error", JOptionPane.ERROR_MESSAGE);
@@ -336,17 +578,229 @@ public class MovieTicketBookingApp extends JFrame {
         }
     }
 
+    /**
+     * Fills in a known customer's details from the phone number, leaving
+     * fields the cashier has typed in alone. The lookup runs once the number
+     * has a full mobile number's digits or the phone field loses focus, not
+     * on every keystroke. Editing the number afterwards clears the filled-in
+     * values again, so a match on a shorter number never sticks.
+     */
+    private final class CustomerFill {
+        private final JTextField phoneField;
+        private final JTextField nameField;
+        private final JTextField emailField;
+        // The number the current details came from, and what was filled in; null if nothing was
+        private String matchedPhone;
+        private String filledName;
+        private String filledEmail;
+
+        CustomerFill(JTextField phoneField, JTextField nameField, JTextField emailField) {
+            this.phoneField = phoneField;
+            this.nameField = nameField;
+            this.emailField = emailField;
+        }
+
+        void phoneEdited() {
+            String phone = phoneField.getText().trim();
+            if (matchedPhone != null && !matchedPhone.equals(phone)) {
+                clear();
+            }
+            if (phone.replaceAll("\\D", "").length() >= MOBILE_DIGITS) {
+                lookUp();
+            }
+        }
+
+        void lookUp() {
+            String phone = phoneField.getText().trim();
+            if (phone.isEmpty() || phone.equals(matchedPhone)) {
+                return;
+            }
+            Customer customer = dbManager.findCustomer(phone);
+            if (customer == null) {
+                return;
+            }
+            matchedPhone = phone;
+            if (nameField.getText().trim().isEmpty()) {
+                filledName = customer.name();
+                nameField.setText(filledName);
+            }
+            if (emailField.getText().trim().isEmpty() && customer.email() != null) {
+                filledEmail = customer.email();
+                emailField.setText(filledEmail);
+            }
+        }
+
+        // Empties the fields that still hold what was filled in for the old number
+        private void clear() {
+            if (filledName != null && nameField.getText().equals(filledName)) {
+                nameField.setText("");
+            }
+            if (filledEmail != null && emailField.getText().equals(filledEmail)) {
+                emailField.setText("");
+            }
+            matchedPhone = null;
+            filledName = null;
+            filledEmail = null;
+        }
+    }
+
+    private void syncOfflineBookings() {
+        BookingJournal.ReplayReport report = dbManager.replayJournal();
+        StringBuilder message = new StringBuilder();
+        message.append(report.replayed()).append(" offline booking(s) confirmed.\n");
+        if (report.pending() > 0) {
+            message.append(report.pending()).append(" still waiting: the database is not reachable yet.\n");
+        }
+
+        List<BookingJournal.Entry> conflicts = dbManager.getJournalConflicts();
+        if (conflicts.isEmpty()) {
+            JOptionPane.showMessageDialog(this, message.toString(), "Offline Bookings", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            message.append("\nThese could not be confirmed; please contact the customers:\n");
+            for (BookingJournal.Entry conflict : conflicts) {
+                message.append(conflict).append("\n");
+            }
+            JTextArea area = new JTextArea(message.toString());
+            area.setFont(MODERN_FONT_PLAIN_14);
+            area.setEditable(false);
+            JScrollPane scrollPane = new JScrollPane(area);
+            scrollPane.setPreferredSize(new Dimension(700, 300));
+
+            Object[] options = {"Mark as Handled", "Close"};
+            int choice = JOptionPane.showOptionDialog(this, scrollPane, "Offline Booking Conflicts",
+                JOptionPane.DEFAULT_OPTION, JOptionPane.WARNING_MESSAGE, null, options, options[1]);
+            if (choice == 0) {
+                dbManager.acknowledgeJournalConflicts();
+            }
+        }
+        if (report.replayed() > 0 && seatButtons != null) {
+            loadSeats();
+        }
+    }
+
+    private void showWaitlist() {
+        Movie movie = (Movie) movieCombo.getSelectedItem();
+        Theatre theatre = (Theatre) theatreCombo.getSelectedItem();
+        ShowTime show = (ShowTime) showCombo.getSelectedItem();
+        if (movie == null || theatre == null || show == null) {
+            JOptionPane.showMessageDialog(this, "Please select movie and theatre first!");
+            return;
+        }
+
+        DefaultTableModel model = new DefaultTableModel(
+            new String[]{"#", "Party", "Customer", "Phone", "Status", "Offer", "Order", "Joined"}, 0);
+        DateTimeFormatter until = DateTimeFormatter.ofPattern("HH:mm");
+        for (WaitlistEntry entry : dbManager.getWaitlist(movie, theatre, show)) {
+            String offer = entry.offerExpires() == null ? ""
+                : String.join(", ", entry.offerSeats()) + " for ₹" + String.format("%.2f", entry.offerTotal())
+                    + " until " + until.format(LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(entry.offerExpires()), ZoneId.systemDefault()));
+            model.addRow(new Object[]{entry.id(), entry.partySize(), entry.customerName(), entry.phone(),
+                entry.status(), offer, entry.orderId() != null ? entry.orderId() : "", entry.joinedAt()});
+        }
+        JTable table = new JTable(model);
+        table.setFont(MODERN_FONT_PLAIN_14);
+        table.getTableHeader().setFont(MODERN_FONT_BOLD_16);
+        table.getTableHeader().setBackground(ACCENT_YELLOW);
+        table.getTableHeader().setForeground(FOREGROUND_DARK);
+        table.setRowHeight(28);
+        table.setFillsViewportHeight(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(1000, 300));
+
+        Object[] options = {"Add Party", "Confirm Offer", "Decline Offer", "Remove Selected", "Close"};
+        int choice = JOptionPane.showOptionDialog(this, scrollPane,
+            "Waitlist - " + movie.name() + ", " + theatre.name() + ", " + show.date() + " " + show,
+            JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, options, options[4]);
+        if (choice == 0) {
+            String input = JOptionPane.showInputDialog(this, "Party size:", "Add to Waitlist",
+                JOptionPane.QUESTION_MESSAGE);
+            if (input == null) {
+                return;
+            }
+            try {
+                joinWaitlist(Integer.parseInt(input.trim()));
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(this, "Please enter a positive number of seats.");
+            }
+        } else if (choice == 1 && table.getSelectedRow() >= 0) {
+            int waitlistId = (Integer) model.getValueAt(table.getSelectedRow(), 0);
+            int orderId = dbManager.confirmWaitlistOffer(waitlistId);
+            if (orderId > 0) {
+                JOptionPane.showMessageDialog(this, "✅ Offer booked as order #" + orderId + ".");
+                if (seatButtons != null) {
+                    loadSeats();
+                }
+            } else if (orderId == DatabaseManager.SEATS_UNAVAILABLE) {
+                JOptionPane.showMessageDialog(this, "This party has no open offer; it may have lapsed.");
+            } else {
+                JOptionPane.showMessageDialog(this, "❌ Booking Failed! Please try again.", "Error",
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        } else if (choice == 2 && table.getSelectedRow() >= 0) {
+            int waitlistId = (Integer) model.getValueAt(table.getSelectedRow(), 0);
+            if (!dbManager.declineWaitlistOffer(waitlistId)) {
+                JOptionPane.showMessageDialog(this, "This party has no open offer.");
+            } else if (seatButtons != null) {
+                loadSeats();
+            }
+        } else if (choice == 3 && table.getSelectedRow() >= 0) {
+            int waitlistId = (Integer) model.getValueAt(table.getSelectedRow(), 0);
+            if (!dbManager.leaveWaitlist(waitlistId)) {
+                JOptionPane.showMessageDialog(this, "Only waiting parties can be removed.");
+            }
+        }
+    }
+
+    private void joinWaitlist(int partySize) {
+        JTextField nameField = new JTextField();
+        nameField.setFont(MODERN_FONT_PLAIN_14);
+        JTextField phoneField = new JTextField();
+        phoneField.setFont(MODERN_FONT_PLAIN_14);
+
+        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        panel.add(new JLabel("Name:")).setFont(MODERN_FONT_PLAIN_14);
+        panel.add(nameField);
+        panel.add(new JLabel("Phone:")).setFont(MODERN_FONT_PLAIN_14);
+        panel.add(phoneField);
+
+        int option = JOptionPane.showConfirmDialog(this, panel, "Waitlist a Party of " + partySize,
+            JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) {
+            return;
+        }
+        String name = nameField.getText().trim();
+        String phone = phoneField.getText().trim();
+        if (name.isEmpty() || phone.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Name and Phone are required!");
+            return;
+        }
+
+        Movie movie = (Movie) movieCombo.getSelectedItem();
+        Theatre theatre = (Theatre) theatreCombo.getSelectedItem();
+        ShowTime show = (ShowTime) showCombo.getSelectedItem();
+        int waitlistId = dbManager.joinWaitlist(movie, theatre, show, partySize, name, phone);
+        if (waitlistId > 0) {
+            JOptionPane.showMessageDialog(this, "✅ " + name + " is on the waitlist (#" + waitlistId + ").");
+        } else {
+            JOptionPane.showMessageDialog(this, "❌ Could not add to the waitlist.", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     private void viewBookings() {
-        ArrayList<String[]> bookings = dbManager.getAllBookings();
+        ArrayList<Booking> bookings = dbManager.getAllBookings();
         if (bookings.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No bookings found!");
             return;
         }
 
         DefaultTableModel model = new DefaultTableModel(
-            new String[]{"Movie", "Theatre", "Date", "Seat", "Customer", "Phone"}, 0);
-        for (String[] booking : bookings) {
-            model.addRow(booking);
+            new String[]{"ID", "Order", "Movie", "Theatre", "Date", "Time", "Seat", "Customer", "Phone", "Price",
+                "Status"}, 0);
+        for (Booking booking : bookings) {
+            model.addRow(new Object[]{booking.id(), booking.orderId(), booking.movie(), booking.theatre(),
+                booking.date(), booking.time() != null ? booking.time() : "All day", booking.seat(), booking.customerName(), booking.phone(),
+                booking.price() != null ? String.format("%.2f", booking.price()) : "", booking.status()});
         }
 
         JTable table = new JTable(model);
@@ -367,6 +821,58 @@ public class MovieTicketBookingApp extends JFrame {
         JOptionPane.showMessageDialog(this, scrollPane, "All Bookings", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    private void cancelBookings() {
+        JComboBox<String> typeCombo = new JComboBox<>(new String[]{"Order ID", "Booking IDs"});
+        typeCombo.setFont(MODERN_FONT_PLAIN_14);
+        JTextField idsField = new JTextField();
+        idsField.setFont(MODERN_FONT_PLAIN_14);
+
+        JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+        panel.add(new JLabel("Cancel by:")).setFont(MODERN_FONT_PLAIN_14);
+        panel.add(typeCombo);
+        panel.add(new JLabel("ID(s), comma separated:")).setFont(MODERN_FONT_PLAIN_14);
+        panel.add(idsField);
+
+        int choice = JOptionPane.showConfirmDialog(this, panel, "Cancel Booking",
+            JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        String input = idsField.getText();
+        if (choice != JOptionPane.OK_OPTION || input.trim().isEmpty()) {
+            return;
+        }
+        boolean byOrder = typeCombo.getSelectedIndex() == 0;
+
+        ArrayList<Integer> ids = new ArrayList<>();
+        for (String part : input.split(",")) {
+            try {
+                ids.add(Integer.parseInt(part.trim()));
+            } catch (NumberFormatException e) {
+                JOptionPane.showMessageDialog(this, "Invalid ID: " + part.trim(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+        }
+
+        int option = JOptionPane.showConfirmDialog(this,
+            "Cancel " + ids.size() + (byOrder ? " order(s)" : " booking(s)") + "? The seats will be released for sale.",
+            "Confirm Cancellation", JOptionPane.YES_NO_OPTION);
+        if (option != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        int cancelled = 0;
+        if (byOrder) {
+            for (int orderId : ids) {
+                cancelled += dbManager.cancelOrder(orderId);
+            }
+        } else {
+            cancelled = dbManager.cancelBookings(ids);
+        }
+        JOptionPane.showMessageDialog(this, cancelled + " seat(s) cancelled.");
+        if (cancelled > 0 && seatButtons != null) {
+            loadSeats();
+        }
+    }
+
     // This main method is intentionally removed/commented out here
     // as the entry point is now LoginFrame.java
 
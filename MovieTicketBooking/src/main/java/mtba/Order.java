@@ -0,0 +1,15 @@
+package mtba;
+
+import java.util.List;
+
+/**
+ * One customer purchase: the customer details and total are stored once in
+ * the orders table, the seats are the bookings rows that reference it.
+ */
+public record Order(int id, String customerName, String phone, double total, String status,
+                    String orderTime, String movie, String theatre, String date, List<String> seats) {
+
+    public Order {
+        seats = List.copyOf(seats);
+    }
+}
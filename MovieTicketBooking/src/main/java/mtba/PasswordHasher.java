@@ -0,0 +1,123 @@
+package mtba;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2 password hashes, stored as
+ * {@code pbkdf2_sha256$<iterations>$<base64 salt>$<base64 hash>}.
+ *
+ * The iteration count sets how much CPU one login attempt costs. The default
+ * keeps a login around 100 ms on a typical desktop CPU; run this class's main
+ * method on the target machine to measure it, and override with
+ * -Dmtba.auth.iterations=N if needed. Hashes made with a different count
+ * still verify and are upgraded on the next successful login.
+ */
+public class PasswordHasher {
+
+    public static final int DEFAULT_ITERATIONS = 210_000;
+    private static final String PREFIX = "pbkdf2_sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public PasswordHasher() {
+        this(Integer.getInteger("mtba.auth.iterations", DEFAULT_ITERATIONS));
+    }
+
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String hash(char[] password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] key = derive(password, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(key);
+    }
+
+    // Compares in constant time; a malformed stored value never matches
+    public boolean verify(char[] password, String stored) {
+        String[] parts = stored == null ? new String[0] : stored.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            byte[] actual = derive(password, salt, storedIterations);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX + "$");
+    }
+
+    // True when the hash was made with a different iteration count than this hasher uses
+    public boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || !parts[1].equals(String.valueOf(iterations));
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /**
+     * Benchmark: prints the cost of one hash at several iteration counts on
+     * this machine, so the setting can be tuned to the terminals in use.
+     */
+    public static void main(String[] args) {
+        int[] candidates = {50_000, 100_000, 210_000, 310_000, 600_000};
+        char[] password = "benchmark-password".toCharArray();
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        // Warm up the JIT so the first candidate is not penalised
+        PasswordHasher warmUp = new PasswordHasher(100_000);
+        for (int i = 0; i < 3; i++) {
+            warmUp.hash(password);
+        }
+
+        System.out.println("PBKDF2-HMAC-SHA256 cost per login (" + rounds + " rounds each)");
+        for (int iterations : candidates) {
+            PasswordHasher hasher = new PasswordHasher(iterations);
+            String stored = hasher.hash(password);
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                hasher.verify(password, stored);
+            }
+            double millis = (System.nanoTime() - start) / 1_000_000.0 / rounds;
+            System.out.printf("%,10d iterations: %8.1f ms%s%n", iterations, millis,
+                    iterations == DEFAULT_ITERATIONS ? "  (default)" : "");
+        }
+    }
+}
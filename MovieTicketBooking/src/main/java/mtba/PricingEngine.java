@@ -0,0 +1,127 @@
+package mtba;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Ticket pricing rules. A seat's price is the base price adjusted for its
+ * category (front rows are cheaper, the back rows are premium), the show day
+ * (weekends cost more), the show time (see PricingRules) and how full the
+ * show already is (surge pricing). The rules are swapped in whole when the
+ * admin changes them, and each quote reads them once, so any number of
+ * threads can quote at once without locking; occupancy comes from the
+ * cached SeatInventory counters.
+ */
+public class PricingEngine {
+
+    public enum SeatCategory {
+        FRONT("Front"),
+        STANDARD("Standard"),
+        PREMIUM("Premium");
+
+        private final String displayName;
+
+        SeatCategory(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private volatile PricingRules rules = PricingRules.DEFAULTS;
+
+    public PricingRules getRules() {
+        return rules;
+    }
+
+    public void setRules(PricingRules rules) {
+        this.rules = rules;
+    }
+
+    public SeatCategory categoryOf(SeatLayout layout, int row) {
+        return categoryOf(rules, layout, row);
+    }
+
+    private static SeatCategory categoryOf(PricingRules rules, SeatLayout layout, int row) {
+        if (row < rules.frontRows()) {
+            return SeatCategory.FRONT;
+        }
+        if (row >= layout.getRows() - rules.premiumRows()) {
+            return SeatCategory.PREMIUM;
+        }
+        return SeatCategory.STANDARD;
+    }
+
+    /**
+     * Price of one seat, rounded to whole rupees. {@code showTime} is HH:mm,
+     * or null for an all-day show; {@code occupancy} is the fraction of the
+     * hall already booked (0.0 - 1.0).
+     */
+    public double quote(SeatLayout layout, String seatLabel, String showDate, String showTime, double occupancy) {
+        PricingRules current = rules;
+        int index = layout.indexOf(seatLabel);
+        double categoryMultiplier = 1.0;
+        if (index >= 0) {
+            categoryMultiplier = switch (categoryOf(current, layout, index / layout.getCols())) {
+                case FRONT -> current.frontMultiplier();
+                case STANDARD -> current.standardMultiplier();
+                case PREMIUM -> current.premiumMultiplier();
+            };
+        }
+        double price = current.basePrice() * categoryMultiplier * showDayMultiplier(current, showDate)
+                * showTimeMultiplier(current, showTime) * surgeMultiplier(current, occupancy);
+        return Math.round(price);
+    }
+
+    public double surgeMultiplier(double occupancy) {
+        return surgeMultiplier(rules, occupancy);
+    }
+
+    private static double surgeMultiplier(PricingRules rules, double occupancy) {
+        for (PricingRules.SurgeTier tier : rules.surgeTiers()) {
+            if (occupancy >= tier.occupancy()) {
+                return tier.multiplier();
+            }
+        }
+        return 1.0;
+    }
+
+    public double showDayMultiplier(String showDate) {
+        return showDayMultiplier(rules, showDate);
+    }
+
+    private static double showDayMultiplier(PricingRules rules, String showDate) {
+        try {
+            DayOfWeek day = LocalDate.parse(showDate).getDayOfWeek();
+            return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY ? rules.weekendMultiplier() : 1.0;
+        } catch (DateTimeParseException | NullPointerException e) {
+            return 1.0;
+        }
+    }
+
+    public double showTimeMultiplier(String showTime) {
+        return showTimeMultiplier(rules, showTime);
+    }
+
+    // All-day shows and unreadable times get no show-time adjustment
+    private static double showTimeMultiplier(PricingRules rules, String showTime) {
+        if (showTime == null) {
+            return 1.0;
+        }
+        try {
+            LocalTime time = LocalTime.parse(showTime);
+            for (PricingRules.TimeBand band : rules.showTimes()) {
+                if (band.contains(time)) {
+                    return band.multiplier();
+                }
+            }
+        } catch (DateTimeParseException e) {
+            // Falls through to no adjustment
+        }
+        return 1.0;
+    }
+}
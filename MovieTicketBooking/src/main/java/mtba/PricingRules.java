@@ -0,0 +1,192 @@
+package mtba;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pricing rules the admin can change, kept as name/value rows of the
+ * pricing_rules table (see toSettings() for the names). Immutable: a change
+ * builds a new set of rules, which PricingEngine swaps in whole.
+ *
+ * Show-time bands are "from-until=multiplier" with times as HH:mm; from is
+ * inclusive, until exclusive, and a band whose until is not after its from
+ * runs past midnight. The first band that contains the show time applies.
+ * Surge tiers are "occupancy=multiplier", occupancy being the fraction of
+ * the hall already booked; the highest tier reached applies.
+ */
+public record PricingRules(double basePrice, int frontRows, int premiumRows,
+                           double frontMultiplier, double standardMultiplier, double premiumMultiplier,
+                           double weekendMultiplier, List<TimeBand> showTimes, List<SurgeTier> surgeTiers) {
+
+    public record TimeBand(LocalTime from, LocalTime until, double multiplier) {
+
+        public boolean contains(LocalTime time) {
+            if (from.isBefore(until)) {
+                return !time.isBefore(from) && time.isBefore(until);
+            }
+            return !time.isBefore(from) || time.isBefore(until);
+        }
+
+        @Override
+        public String toString() {
+            return from + "-" + until + "=" + multiplier;
+        }
+    }
+
+    public record SurgeTier(double occupancy, double multiplier) {
+
+        @Override
+        public String toString() {
+            return occupancy + "=" + multiplier;
+        }
+    }
+
+    // Matinees are cheaper, evening shows dearer
+    public static final PricingRules DEFAULTS = new PricingRules(250.0, 2, 2, 0.8, 1.0, 1.3, 1.2,
+            List.of(new TimeBand(LocalTime.of(0, 0), LocalTime.of(12, 0), 0.9),
+                    new TimeBand(LocalTime.of(18, 0), LocalTime.of(0, 0), 1.1)),
+            List.of(new SurgeTier(0.50, 1.10), new SurgeTier(0.80, 1.25), new SurgeTier(0.95, 1.40)));
+
+    public PricingRules {
+        if (!(basePrice > 0) || frontRows < 0 || premiumRows < 0) {
+            throw new IllegalArgumentException("Base price must be positive and row counts not negative");
+        }
+        for (double multiplier : new double[]{frontMultiplier, standardMultiplier, premiumMultiplier,
+                weekendMultiplier}) {
+            checkMultiplier(multiplier);
+        }
+        for (TimeBand band : showTimes) {
+            checkMultiplier(band.multiplier());
+        }
+        for (SurgeTier tier : surgeTiers) {
+            checkMultiplier(tier.multiplier());
+            if (!(tier.occupancy() >= 0 && tier.occupancy() <= 1)) {
+                throw new IllegalArgumentException("Surge occupancy must be between 0 and 1: " + tier.occupancy());
+            }
+        }
+        showTimes = List.copyOf(showTimes);
+        // Kept highest threshold first, so the first tier reached is the one that applies
+        ArrayList<SurgeTier> tiers = new ArrayList<>(surgeTiers);
+        tiers.sort(Comparator.comparingDouble(SurgeTier::occupancy).reversed());
+        surgeTiers = List.copyOf(tiers);
+    }
+
+    private static void checkMultiplier(double multiplier) {
+        if (!(multiplier > 0 && multiplier <= 10)) {
+            throw new IllegalArgumentException("Multipliers must be above 0 and at most 10: " + multiplier);
+        }
+    }
+
+    public Map<String, String> toSettings() {
+        LinkedHashMap<String, String> settings = new LinkedHashMap<>();
+        settings.put("base_price", String.valueOf(basePrice));
+        settings.put("front_rows", String.valueOf(frontRows));
+        settings.put("premium_rows", String.valueOf(premiumRows));
+        settings.put("front_multiplier", String.valueOf(frontMultiplier));
+        settings.put("standard_multiplier", String.valueOf(standardMultiplier));
+        settings.put("premium_multiplier", String.valueOf(premiumMultiplier));
+        settings.put("weekend_multiplier", String.valueOf(weekendMultiplier));
+        settings.put("show_times", join(showTimes));
+        settings.put("surge", join(surgeTiers));
+        return settings;
+    }
+
+    /**
+     * Rules from pricing_rules rows; a missing name keeps its default.
+     * Throws IllegalArgumentException naming the first value that does not
+     * parse or is out of range.
+     */
+    public static PricingRules fromSettings(Map<String, String> settings) {
+        Map<String, String> values = new LinkedHashMap<>(DEFAULTS.toSettings());
+        values.putAll(settings);
+        return new PricingRules(
+                number(values, "base_price"),
+                integer(values, "front_rows"),
+                integer(values, "premium_rows"),
+                number(values, "front_multiplier"),
+                number(values, "standard_multiplier"),
+                number(values, "premium_multiplier"),
+                number(values, "weekend_multiplier"),
+                parseShowTimes(values.get("show_times")),
+                parseSurge(values.get("surge")));
+    }
+
+    private static double number(Map<String, String> values, String name) {
+        try {
+            return Double.parseDouble(values.get(name).trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException("Not a number for " + name + ": " + values.get(name));
+        }
+    }
+
+    private static int integer(Map<String, String> values, String name) {
+        try {
+            return Integer.parseInt(values.get(name).trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IllegalArgumentException("Not a whole number for " + name + ": " + values.get(name));
+        }
+    }
+
+    private static List<TimeBand> parseShowTimes(String text) {
+        ArrayList<TimeBand> bands = new ArrayList<>();
+        for (String[] rule : pairs(text, "show_times")) {
+            String[] range = rule[0].split("-");
+            try {
+                if (range.length != 2) {
+                    throw new IllegalArgumentException();
+                }
+                bands.add(new TimeBand(LocalTime.parse(range[0].trim()), LocalTime.parse(range[1].trim()),
+                        Double.parseDouble(rule[1])));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Bad show time band (want HH:mm-HH:mm=multiplier): "
+                        + rule[0] + "=" + rule[1]);
+            }
+        }
+        return bands;
+    }
+
+    private static List<SurgeTier> parseSurge(String text) {
+        ArrayList<SurgeTier> tiers = new ArrayList<>();
+        for (String[] rule : pairs(text, "surge")) {
+            try {
+                tiers.add(new SurgeTier(Double.parseDouble(rule[0]), Double.parseDouble(rule[1])));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad surge tier (want occupancy=multiplier): "
+                        + rule[0] + "=" + rule[1]);
+            }
+        }
+        return tiers;
+    }
+
+    // "a=b, c=d" as {a, b}, {c, d}; blank means no rules
+    private static List<String[]> pairs(String text, String name) {
+        ArrayList<String[]> pairs = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return pairs;
+        }
+        for (String part : text.split(",")) {
+            String[] pair = part.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Bad entry in " + name + ": " + part.trim());
+            }
+            pairs.add(new String[]{pair[0].trim(), pair[1].trim()});
+        }
+        return pairs;
+    }
+
+    private static String join(List<?> rules) {
+        StringBuilder text = new StringBuilder();
+        for (Object rule : rules) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(rule);
+        }
+        return text.toString();
+    }
+}
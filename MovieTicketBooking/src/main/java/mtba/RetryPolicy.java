@@ -0,0 +1,87 @@
+package mtba;
+
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How often and how long to retry a database write that hit a lock held by
+ * another terminal. Delays grow exponentially from the base delay up to the
+ * cap, and each one is drawn at random from [0, delay] ("full jitter") so
+ * terminals that collided once do not collide again on the next attempt.
+ *
+ * Defaults can be changed with -Dmtba.retry.maxAttempts,
+ * -Dmtba.retry.baseDelayMs and -Dmtba.retry.maxDelayMs.
+ */
+public class RetryPolicy {
+
+    // SQLite primary result codes (extended codes keep these in the low byte)
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private static final int SQLITE_READONLY = 8;
+    private static final int SQLITE_IOERR = 10;
+    private static final int SQLITE_CANTOPEN = 14;
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    // Draws the jitter; null means the calling thread's ThreadLocalRandom
+    private final Random random;
+
+    public RetryPolicy() {
+        this(Integer.getInteger("mtba.retry.maxAttempts", 6),
+             Long.getLong("mtba.retry.baseDelayMs", 20),
+             Long.getLong("mtba.retry.maxDelayMs", 1000));
+    }
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this(maxAttempts, baseDelayMs, maxDelayMs, null);
+    }
+
+    // For tests: a seeded random makes the delays repeatable
+    RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, Random random) {
+        if (maxAttempts < 1 || baseDelayMs < 0 || maxDelayMs < baseDelayMs) {
+            throw new IllegalArgumentException("Invalid retry policy");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.random = random;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // Delay before retrying after the given (1-based) failed attempt
+    public long delayMillis(int attempt) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        return (random != null ? random : ThreadLocalRandom.current()).nextLong(ceiling + 1);
+    }
+
+    public boolean isRetryable(SQLException e) {
+        int code = e.getErrorCode() & 0xFF;
+        return code == SQLITE_BUSY || code == SQLITE_LOCKED;
+    }
+
+    /**
+     * True if the error means the database file itself cannot be used right
+     * now (locked, unreachable or read-only), rather than something being
+     * wrong with the statement.
+     */
+    public boolean isUnavailable(SQLException e) {
+        int code = e.getErrorCode() & 0xFF;
+        return isRetryable(e) || code == SQLITE_READONLY || code == SQLITE_IOERR || code == SQLITE_CANTOPEN;
+    }
+
+    // Sleeps for the attempt's delay; returns false if the thread was interrupted
+    public boolean pause(int attempt) {
+        try {
+            Thread.sleep(delayMillis(attempt));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
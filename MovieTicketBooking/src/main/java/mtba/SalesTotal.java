@@ -0,0 +1,5 @@
+package mtba;
+
+// Seats sold and revenue summed over one key (a date or a movie name)
+public record SalesTotal(String key, long seatsSold, double revenue) {
+}
@@ -0,0 +1,103 @@
+package mtba;
+
+import java.util.Arrays;
+
+/**
+ * Picks the best available seats for a party. Availability is a bitmap with
+ * one long per row (bit c set = seat c booked), so finding every contiguous
+ * run of N free seats in a row is N shift/AND operations instead of a scan
+ * over seat buttons.
+ */
+public class SeatAllocator {
+
+    // How much one row of distance from the middle costs compared to one seat sideways
+    private static final double ROW_WEIGHT = 1.0;
+
+    private final SeatLayout layout;
+    // Bits of the seats that exist in each row (the back row may be short)
+    private final long[] rowMasks;
+    private final double centerCol;
+    private final double centerRow;
+
+    public SeatAllocator(SeatLayout layout) {
+        this.layout = layout;
+        this.rowMasks = new long[layout.getRows()];
+        for (int row = 0; row < rowMasks.length; row++) {
+            int seats = layout.getSeatsInRow(row);
+            rowMasks[row] = seats == 64 ? -1L : (1L << seats) - 1;
+        }
+        this.centerCol = (layout.getCols() - 1) / 2.0;
+        this.centerRow = (layout.getRows() - 1) / 2.0;
+    }
+
+    /**
+     * Returns the seat indexes (row * cols + col) for the party, preferring a
+     * single block in one row as close to the centre of the hall as possible.
+     * If no row has room for the whole party it is split into the largest
+     * blocks still available. Returns an empty array when the show does not
+     * have enough free seats, or when the bitmap is null (show not loaded).
+     * The passed bitmap is not modified.
+     */
+    public int[] allocate(long[] booked, int partySize) {
+        if (booked == null || partySize <= 0 || booked.length != layout.getRows()) {
+            return new int[0];
+        }
+        long[] taken = booked.clone();
+        int free = 0;
+        for (int row = 0; row < taken.length; row++) {
+            free += Long.bitCount(~taken[row] & rowMasks[row]);
+        }
+        if (free < partySize) {
+            return new int[0];
+        }
+
+        int[] seats = new int[partySize];
+        int filled = 0;
+        int remaining = partySize;
+        while (remaining > 0) {
+            int size = Math.min(remaining, layout.getCols());
+            int[] block = bestBlock(taken, size);
+            while (block == null) {
+                size--;
+                block = bestBlock(taken, size);
+            }
+            int row = block[0];
+            for (int col = block[1]; col < block[1] + size; col++) {
+                seats[filled++] = row * layout.getCols() + col;
+                taken[row] |= 1L << col;
+            }
+            remaining -= size;
+        }
+        Arrays.sort(seats);
+        return seats;
+    }
+
+    // Returns {row, firstCol} of the best free run of exactly `size` seats, or null if none exists
+    private int[] bestBlock(long[] taken, int size) {
+        int bestRow = -1;
+        int bestCol = -1;
+        double bestScore = Double.MAX_VALUE;
+        double halfBlock = (size - 1) / 2.0;
+
+        for (int row = 0; row < taken.length; row++) {
+            long free = ~taken[row] & rowMasks[row];
+            // Bit c of `starts` survives only if seats c .. c+size-1 are all free
+            long starts = free;
+            for (int i = 1; i < size && starts != 0; i++) {
+                starts &= free >>> i;
+            }
+            double rowScore = ROW_WEIGHT * Math.abs(row - centerRow);
+            while (starts != 0) {
+                int col = Long.numberOfTrailingZeros(starts);
+                starts &= starts - 1;
+                double score = rowScore + Math.abs(col + halfBlock - centerCol);
+                if (score < bestScore) {
+                    bestScore = score;
+                    bestRow = row;
+                    bestCol = col;
+                }
+            }
+        }
+        return bestRow < 0 ? null : new int[]{bestRow, bestCol};
+    }
+}
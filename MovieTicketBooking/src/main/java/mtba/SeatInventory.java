@@ -0,0 +1,204 @@
+package mtba;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory availability bitmaps, one per show (movie + theatre + date +
+ * show ID, see ShowTime), each laid out for its theatre's hall. Filled from
+ * the bookings table the first time a show is viewed and kept in step by the
+ * booking path, so seat allocation never has to hit the database.
+ *
+ * Each entry remembers the show's version (see show_versions) it reflects.
+ * Other terminals may book the same show, so a change committed here is only
+ * applied if it moves the entry from version N to N + 1; otherwise the entry
+ * is stale and dropped, to be reloaded on next use.
+ */
+public class SeatInventory {
+
+    private static final class ShowSeats {
+        final SeatLayout layout;
+        final long[] booked;
+        int bookedCount;
+        long version;
+
+        ShowSeats(SeatLayout layout, long version) {
+            this.layout = layout;
+            booked = new long[layout.getRows()];
+            this.version = version;
+        }
+    }
+
+    private final ConcurrentHashMap<String, ShowSeats> shows = new ConcurrentHashMap<>();
+
+    public static String showKey(int movieId, int theatreId, String date, int showId) {
+        return movieId + ":" + theatreId + ":" + date + ":" + showId;
+    }
+
+    public boolean isLoaded(String showKey) {
+        return shows.containsKey(showKey);
+    }
+
+    // Replaces whatever was cached for the show with the given booked seat labels
+    public void load(String showKey, SeatLayout layout, Collection<String> bookedSeats, long version) {
+        ShowSeats seats = new ShowSeats(layout, version);
+        apply(seats, bookedSeats, true);
+        shows.put(showKey, seats);
+    }
+
+    // Drops every cached show, e.g. after theatre sizes have changed
+    public void clear() {
+        shows.clear();
+    }
+
+    // Version the cached entry reflects, or -1 if the show is not cached
+    public long getVersion(String showKey) {
+        ShowSeats seats = shows.get(showKey);
+        if (seats == null) {
+            return -1;
+        }
+        synchronized (seats) {
+            return seats.version;
+        }
+    }
+
+    // True if none of the seats are booked in the cached entry (or the show is not cached).
+    // Labels the hall does not have are never available.
+    public boolean isAvailable(String showKey, Collection<String> seatLabels) {
+        ShowSeats seats = shows.get(showKey);
+        if (seats == null) {
+            return true;
+        }
+        synchronized (seats) {
+            SeatLayout layout = seats.layout;
+            for (String label : seatLabels) {
+                int index = layout.indexOf(label);
+                if (index < 0 || (seats.booked[index / layout.getCols()] & (1L << (index % layout.getCols()))) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Marks the seats taken in the cached entry without moving its version,
+     * for bookings held locally while the database is out of reach. Returns
+     * false, changing nothing, if the show is not cached or a seat is taken.
+     */
+    public boolean reserve(String showKey, Collection<String> seatLabels) {
+        ShowSeats seats = shows.get(showKey);
+        if (seats == null) {
+            return false;
+        }
+        synchronized (seats) {
+            if (!isAvailable(showKey, seatLabels)) {
+                return false;
+            }
+            apply(seats, seatLabels, true);
+            return true;
+        }
+    }
+
+    // Undoes reserve()
+    public void unreserve(String showKey, Collection<String> seatLabels) {
+        ShowSeats seats = shows.get(showKey);
+        if (seats == null) {
+            return;
+        }
+        synchronized (seats) {
+            apply(seats, seatLabels, false);
+        }
+    }
+
+    public void markBooked(String showKey, Collection<String> seatLabels, long newVersion) {
+        applyCommitted(showKey, seatLabels, true, newVersion);
+    }
+
+    public void invalidate(String showKey) {
+        shows.remove(showKey);
+    }
+
+    public void release(String showKey, Collection<String> seatLabels, long newVersion) {
+        applyCommitted(showKey, seatLabels, false, newVersion);
+    }
+
+    private void applyCommitted(String showKey, Collection<String> seatLabels, boolean booked, long newVersion) {
+        ShowSeats seats = shows.get(showKey);
+        if (seats == null) {
+            return;
+        }
+        synchronized (seats) {
+            if (seats.version == newVersion - 1) {
+                apply(seats, seatLabels, booked);
+                seats.version = newVersion;
+                return;
+            }
+        }
+        // Someone else changed the show in between; reload it next time
+        shows.remove(showKey, seats);
+    }
+
+    // Cached number of booked seats for the show, or -1 if the show is not cached
+    public int bookedCount(String showKey) {
+        ShowSeats seats = shows.get(showKey);
+        if (seats == null) {
+            return -1;
+        }
+        synchronized (seats) {
+            return seats.bookedCount;
+        }
+    }
+
+    // Labels of the booked seats in the cached entry, or null if the show is not cached
+    public List<String> bookedSeats(String showKey) {
+        ShowSeats seats = shows.get(showKey);
+        if (seats == null) {
+            return null;
+        }
+        ArrayList<String> labels = new ArrayList<>();
+        synchronized (seats) {
+            SeatLayout layout = seats.layout;
+            for (int index = 0; index < layout.getCapacity(); index++) {
+                if ((seats.booked[index / layout.getCols()] & (1L << (index % layout.getCols()))) != 0) {
+                    labels.add(layout.label(index));
+                }
+            }
+        }
+        return labels;
+    }
+
+    // Returns a copy of the show's bitmap that callers may modify, or null if the show is not cached
+    public long[] snapshot(String showKey) {
+        ShowSeats seats = shows.get(showKey);
+        if (seats == null) {
+            return null;
+        }
+        synchronized (seats) {
+            return seats.booked.clone();
+        }
+    }
+
+    private void apply(ShowSeats seats, Collection<String> seatLabels, boolean booked) {
+        SeatLayout layout = seats.layout;
+        int cols = layout.getCols();
+        for (String label : seatLabels) {
+            int index = layout.indexOf(label);
+            if (index < 0) {
+                continue;
+            }
+            long bit = 1L << (index % cols);
+            int row = index / cols;
+            boolean wasBooked = (seats.booked[row] & bit) != 0;
+            if (booked && !wasBooked) {
+                seats.booked[row] |= bit;
+                seats.bookedCount++;
+            } else if (!booked && wasBooked) {
+                seats.booked[row] &= ~bit;
+                seats.bookedCount--;
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package mtba;
+
+/**
+ * Geometry of a screen's seating grid. Rows are lettered from the screen
+ * backwards ("A" is the front row) and seats are numbered from 1, so the
+ * seat labels stored in bookings look like "A1" .. "H10". Every row is full
+ * width except possibly the back row, which holds whatever is left of the
+ * capacity.
+ */
+public class SeatLayout {
+
+    // Hall shape for theatres without a seat count (80 seats)
+    public static final SeatLayout STANDARD = new SeatLayout(8, 10);
+
+    // One row must fit into a single long bitmap and a single letter
+    public static final int MAX_ROWS = 26;
+    public static final int MAX_COLS = 64;
+    public static final int MAX_CAPACITY = MAX_ROWS * MAX_COLS;
+
+    private final int rows;
+    private final int cols;
+    private final int capacity;
+
+    public SeatLayout(int rows, int cols) {
+        this(rows, cols, rows * cols);
+    }
+
+    public SeatLayout(int rows, int cols, int capacity) {
+        if (rows < 1 || rows > MAX_ROWS || cols < 1 || cols > MAX_COLS
+                || capacity <= (rows - 1) * cols || capacity > rows * cols) {
+            throw new IllegalArgumentException("Unsupported seat layout " + rows + "x" + cols + " for " + capacity);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.capacity = capacity;
+    }
+
+    /**
+     * A hall for the given number of seats, somewhat wider than deep (80
+     * seats gives the standard 8 x 10). A count of 0 or less means unknown
+     * and gives STANDARD.
+     */
+    public static SeatLayout forCapacity(int seats) {
+        if (seats <= 0) {
+            return STANDARD;
+        }
+        if (seats > MAX_CAPACITY) {
+            throw new IllegalArgumentException("At most " + MAX_CAPACITY + " seats are supported, not " + seats);
+        }
+        int cols = (int) Math.ceil(Math.sqrt(seats * 1.25));
+        cols = Math.min(MAX_COLS, Math.max(cols, (seats + MAX_ROWS - 1) / MAX_ROWS));
+        int rows = (seats + cols - 1) / cols;
+        return new SeatLayout(rows, cols, seats);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Seats in the row; only the back row can be short
+    public int getSeatsInRow(int row) {
+        return row < rows - 1 ? cols : capacity - (rows - 1) * cols;
+    }
+
+    public String label(int row, int col) {
+        return (char) ('A' + row) + String.valueOf(col + 1);
+    }
+
+    public String label(int seatIndex) {
+        return label(seatIndex / cols, seatIndex % cols);
+    }
+
+    // Returns row * cols + col for a label like "C7", or -1 if it is not a seat of this layout
+    public int indexOf(String label) {
+        if (label == null || label.length() < 2) {
+            return -1;
+        }
+        int row = label.charAt(0) - 'A';
+        int col;
+        try {
+            col = Integer.parseInt(label.substring(1)) - 1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (row < 0 || row >= rows || col < 0 || col >= cols || row * cols + col >= capacity) {
+            return -1;
+        }
+        return row * cols + col;
+    }
+}
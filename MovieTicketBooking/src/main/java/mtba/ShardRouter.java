@@ -0,0 +1,107 @@
+package mtba;
+
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads bookings over several database files by theatre, so a busy theatre
+ * only holds the write lock of its own shard. Shard 0 is the main
+ * movie_booking.db, which also keeps the catalog (movies, theatres, shows,
+ * users); shard k &gt; 0 is movie_booking_shard&lt;k&gt;.db with the main file
+ * attached as "catalog", so its bookings can still be joined to movie and
+ * theatre names. With one shard (the default) everything stays in the main
+ * file as before.
+ *
+ * Order and booking IDs are unique across shards: shard k hands out IDs from
+ * k * ID_RANGE upwards, so the shard holding an ID is ID / ID_RANGE.
+ *
+ * The shard count is set with -Dmtba.shards. The files live in the working
+ * directory, or in the directory given with -Dmtba.dataDir.
+ */
+public class ShardRouter {
+
+    public static final String CATALOG_FILE = "movie_booking.db";
+    public static final long ID_RANGE = 100_000_000L;
+
+    private final List<Connection> shards = new ArrayList<>();
+
+    // The catalog connection doubles as shard 0
+    public ShardRouter(Connection catalog, int shardCount) throws SQLException {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1");
+        }
+        shards.add(catalog);
+        for (int k = 1; k < shardCount; k++) {
+            shards.add(open(k));
+        }
+    }
+
+    public static int configuredShardCount() {
+        return Math.max(1, Integer.getInteger("mtba.shards", 1));
+    }
+
+    // Read on every call, so tests can point a process at a directory of their own
+    public static String path(int shard) {
+        String file = shard == 0 ? CATALOG_FILE : "movie_booking_shard" + shard + ".db";
+        String dataDir = System.getProperty("mtba.dataDir");
+        return dataDir == null || dataDir.isEmpty() ? file : Paths.get(dataDir, file).toString();
+    }
+
+    public static String catalogPath() {
+        return path(0);
+    }
+
+    // Opens shard k (k > 0) with the catalog attached
+    static Connection open(int shard) throws SQLException {
+        Connection shardConn = DriverManager.getConnection("jdbc:sqlite:" + path(shard));
+        try (Statement stmt = shardConn.createStatement()) {
+            stmt.execute("ATTACH DATABASE '" + catalogPath() + "' AS catalog");
+        } catch (SQLException e) {
+            shardConn.close();
+            throw e;
+        }
+        return shardConn;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public int shardOf(int theatreId) {
+        return Math.floorMod(theatreId, shards.size());
+    }
+
+    public Connection forTheatre(int theatreId) {
+        return shards.get(shardOf(theatreId));
+    }
+
+    // Shard holding the given order or booking ID, or -1 if the ID is outside every shard's range
+    public int shardOfId(long id) {
+        long shard = id / ID_RANGE;
+        return id > 0 && shard < shards.size() ? (int) shard : -1;
+    }
+
+    public Connection get(int shard) {
+        return shards.get(shard);
+    }
+
+    public List<Connection> all() {
+        return shards;
+    }
+
+    // Closes shards 1..n; the catalog connection is left to its owner
+    public void close() {
+        for (int k = 1; k < shards.size(); k++) {
+            try {
+                shards.get(k).close();
+            } catch (SQLException e) {
+                System.err.println("Error closing shard " + k + ": " + e.getMessage());
+            }
+        }
+    }
+}
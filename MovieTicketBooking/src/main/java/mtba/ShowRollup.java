@@ -0,0 +1,7 @@
+package mtba;
+
+// Seats sold and revenue of one show; occupancy is a percentage, null if the theatre has no seat count.
+// time is null for a theatre's all-day show.
+public record ShowRollup(String movie, String theatre, String date, String time, int seatsSold, int capacity,
+                         Double occupancy, double revenue) {
+}
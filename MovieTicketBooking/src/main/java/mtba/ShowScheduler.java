@@ -0,0 +1,138 @@
+package mtba;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lays out show times for every screen of every theatre over a range of
+ * days. A screen is busy for the movie's duration plus a cleaning gap after
+ * each show; shows start on a 5-minute grid between opening time and the
+ * last start time, and may run past midnight.
+ *
+ * Each screen keeps its busy time in an IntervalTree, seeded with the shows
+ * already scheduled there (imported ones, or an earlier run's). New shows
+ * only go into free time, so running the scheduler twice over the same days
+ * adds nothing. Existing shows that overlap each other are reported as
+ * conflicts.
+ *
+ * Screens rotate through the movie list, offset per screen and per day, so
+ * each movie gets spread over the screens. Movies without a duration are
+ * not scheduled.
+ *
+ * Defaults can be changed with -Dmtba.schedule.opening (HH:mm),
+ * -Dmtba.schedule.lastStart (HH:mm) and -Dmtba.schedule.gapMin.
+ */
+public class ShowScheduler {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int GRID_MINUTES = 5;
+    // Busy time assumed for an existing show whose movie has no duration
+    private static final int DEFAULT_DURATION = 120;
+
+    public record Show(int movieId, int theatreId, int screen, LocalDate date, LocalTime time) {
+    }
+
+    // Two shows on the same screen whose busy times overlap
+    public record Conflict(Show show, Show other) {
+    }
+
+    public record Result(List<Show> created, List<Conflict> conflicts) {
+    }
+
+    private final LocalTime opening;
+    private final LocalTime lastStart;
+    private final int gapMinutes;
+
+    public ShowScheduler() {
+        this(LocalTime.parse(System.getProperty("mtba.schedule.opening", "10:00")),
+             LocalTime.parse(System.getProperty("mtba.schedule.lastStart", "22:30")),
+             Integer.getInteger("mtba.schedule.gapMin", 20));
+    }
+
+    public ShowScheduler(LocalTime opening, LocalTime lastStart, int gapMinutes) {
+        if (lastStart.isBefore(opening) || gapMinutes < 0) {
+            throw new IllegalArgumentException("Invalid schedule settings");
+        }
+        this.opening = opening;
+        this.lastStart = lastStart;
+        this.gapMinutes = gapMinutes;
+    }
+
+    /**
+     * Shows to add for the given days. screens maps theatre ID to its number
+     * of screens; existing holds the shows already scheduled on those days
+     * (and the day before and after, for late shows running past midnight).
+     */
+    public Result schedule(List<Movie> movies, Map<Integer, Integer> screens, List<Show> existing,
+                           Map<Integer, Integer> durations, LocalDate from, int days) {
+        ArrayList<Movie> playable = new ArrayList<>();
+        for (Movie movie : movies) {
+            if (movie.duration() > 0) {
+                playable.add(movie);
+            }
+        }
+
+        // Busy time per screen, keyed "theatre:screen"
+        HashMap<String, IntervalTree<Show>> busy = new HashMap<>();
+        ArrayList<Conflict> conflicts = new ArrayList<>();
+        for (Show show : existing) {
+            IntervalTree<Show> tree = busy.computeIfAbsent(show.theatreId() + ":" + show.screen(),
+                    k -> new IntervalTree<>());
+            long start = minuteOf(show.date(), show.time());
+            long end = start + durations.getOrDefault(show.movieId(), DEFAULT_DURATION) + gapMinutes;
+            for (Show other : tree.overlapping(start, end)) {
+                conflicts.add(new Conflict(show, other));
+            }
+            tree.insert(start, end, show);
+        }
+
+        ArrayList<Show> created = new ArrayList<>();
+        if (playable.isEmpty()) {
+            return new Result(created, conflicts);
+        }
+        for (Map.Entry<Integer, Integer> theatre : screens.entrySet()) {
+            int theatreId = theatre.getKey();
+            for (int screen = 1; screen <= theatre.getValue(); screen++) {
+                IntervalTree<Show> tree = busy.computeIfAbsent(theatreId + ":" + screen, k -> new IntervalTree<>());
+                for (int day = 0; day < days; day++) {
+                    LocalDate date = from.plusDays(day);
+                    int next = screen - 1 + day;
+                    long cursor = minuteOf(date, opening);
+                    long last = minuteOf(date, lastStart);
+                    while (cursor <= last) {
+                        Movie movie = playable.get(next % playable.size());
+                        long end = cursor + movie.duration() + gapMinutes;
+                        Show blocking = tree.firstOverlap(cursor, end);
+                        if (blocking != null) {
+                            // Try again right after the show in the way
+                            long blockingStart = minuteOf(blocking.date(), blocking.time());
+                            cursor = roundUp(blockingStart
+                                    + durations.getOrDefault(blocking.movieId(), DEFAULT_DURATION) + gapMinutes);
+                            continue;
+                        }
+                        Show show = new Show(movie.id(), theatreId, screen, date,
+                                LocalTime.ofSecondOfDay((cursor - date.toEpochDay() * MINUTES_PER_DAY) * 60));
+                        tree.insert(cursor, end, show);
+                        created.add(show);
+                        cursor = roundUp(end);
+                        next++;
+                    }
+                }
+            }
+        }
+        return new Result(created, conflicts);
+    }
+
+    // Minutes since 1970-01-01 00:00, so busy times compare across midnight
+    private static long minuteOf(LocalDate date, LocalTime time) {
+        return date.toEpochDay() * MINUTES_PER_DAY + time.getHour() * 60 + time.getMinute();
+    }
+
+    private static long roundUp(long minute) {
+        return (minute + GRID_MINUTES - 1) / GRID_MINUTES * GRID_MINUTES;
+    }
+}
@@ -0,0 +1,20 @@
+package mtba;
+
+/**
+ * One showing of a movie at a theatre, as picked at the counter: a row of
+ * the shows table. A theatre without a schedule sells a single all-day show
+ * per movie and date, with ID 0 and no time. Bookings, seat maps and
+ * waitlists are kept per show.
+ */
+public record ShowTime(int id, String date, String time, int screen) {
+
+    // The one show of a theatre that has no schedule
+    public static ShowTime allDay(String date) {
+        return new ShowTime(0, date, null, 0);
+    }
+
+    @Override
+    public String toString() {
+        return time == null ? "All day" : time + " (Screen " + screen + ")";
+    }
+}
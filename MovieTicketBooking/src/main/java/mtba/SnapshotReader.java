@@ -0,0 +1,283 @@
+package mtba;
+
+import org.sqlite.SQLiteConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-only copy of the database files for reports and catalog lists, so
+ * heavy reads do not hold locks on the files the booking path writes. Each
+ * shard is copied with SQLite's online backup API ("restore from"), which
+ * reads the live file in small steps and lets writers commit in between.
+ * The copies are temporary files opened read-only, not in-memory databases,
+ * so a snapshot costs disk rather than heap and a streaming export over it
+ * still runs in constant memory. The other shards' copies attach shard 0's
+ * as "catalog", like the live files do.
+ *
+ * Copies are refreshed in the background every half of the staleness bound.
+ * A copy older than the bound is never handed out; reads then go to the live
+ * files until the next refresh lands. The first read after startup or after
+ * invalidate() also goes live.
+ *
+ * Enabled with -Dmtba.snapshot.maxStalenessMs=&lt;ms&gt;; the default of 0
+ * sends every read to the live files. copy() takes a private copy for one
+ * long read either way.
+ */
+public class SnapshotReader {
+
+    // Numbers the copies' files so no two snapshots share a name
+    private static final AtomicLong FILE_IDS = new AtomicLong();
+
+    // One set of shard copies; closed and deleted once it has been replaced and its last reader is done
+    private static final class Snapshot {
+        final List<Connection> shards;
+        final List<Path> files;
+        final long takenAt;
+        int readers;
+        boolean retired;
+
+        Snapshot(List<Connection> shards, List<Path> files, long takenAt) {
+            this.shards = shards;
+            this.files = files;
+            this.takenAt = takenAt;
+        }
+    }
+
+    /**
+     * The connections one read should use: a snapshot, or the live shards if
+     * no fresh snapshot is available. Must be closed when the read is done.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Snapshot snapshot;
+
+        private Lease(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public List<Connection> shards() {
+            return snapshot != null ? snapshot.shards : live.all();
+        }
+
+        // Shard 0 holds the catalog tables
+        public Connection catalog() {
+            return shards().get(0);
+        }
+
+        public boolean isSnapshot() {
+            return snapshot != null;
+        }
+
+        @Override
+        public void close() {
+            if (snapshot != null) {
+                release(snapshot);
+            }
+        }
+    }
+
+    private final ShardRouter live;
+    private final long maxStalenessMs;
+    private ScheduledExecutorService refresher;
+    // Holds the copies' files; created with the refresher
+    private Path directory;
+    private Snapshot current;
+    // Bumped by invalidate(); a refresh that started under an older generation is thrown away
+    private long generation;
+    private boolean closed;
+
+    public SnapshotReader(ShardRouter live) {
+        this(live, Long.getLong("mtba.snapshot.maxStalenessMs", 0));
+    }
+
+    public SnapshotReader(ShardRouter live, long maxStalenessMs) {
+        if (maxStalenessMs < 0) {
+            throw new IllegalArgumentException("Staleness bound must not be negative");
+        }
+        this.live = live;
+        this.maxStalenessMs = maxStalenessMs;
+    }
+
+    public boolean isEnabled() {
+        return maxStalenessMs > 0;
+    }
+
+    public synchronized Lease lease() {
+        if (!isEnabled() || closed) {
+            return new Lease(null);
+        }
+        if (refresher == null) {
+            startRefresher();
+        }
+        if (closed || current == null || System.currentTimeMillis() - current.takenAt > maxStalenessMs) {
+            return new Lease(null);
+        }
+        current.readers++;
+        return new Lease(current);
+    }
+
+    /**
+     * A copy of the files taken now, for this caller alone, whether or not
+     * snapshots are enabled: for long reads such as exports, which would
+     * otherwise keep bookings from committing for as long as they run. The
+     * copy is deleted when the lease is closed.
+     */
+    public Lease copy() throws IOException, SQLException {
+        Snapshot snapshot = take();
+        synchronized (this) {
+            snapshot.readers = 1;
+            snapshot.retired = true;
+        }
+        return new Lease(snapshot);
+    }
+
+    // Drops the current copy (e.g. after a catalog change) and takes a new one straight away
+    public synchronized void invalidate() {
+        generation++;
+        if (current != null) {
+            retire(current);
+            current = null;
+        }
+        if (refresher != null) {
+            refresher.execute(this::refresh);
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        if (current != null) {
+            retire(current);
+            current = null;
+        }
+    }
+
+    private void startRefresher() {
+        try {
+            directory();
+        } catch (IOException e) {
+            System.err.println("Snapshots disabled, no temporary directory: " + e.getMessage());
+            closed = true;
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("snapshot-refresh-", 0).factory());
+        long interval = Math.max(1, maxStalenessMs / 2);
+        refresher.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized Path directory() throws IOException {
+        if (directory == null) {
+            directory = Files.createTempDirectory("mtba-snapshot");
+            directory.toFile().deleteOnExit();
+        }
+        return directory;
+    }
+
+    // Runs on the refresher thread only; the copy is made outside the lock so readers never wait for it
+    private void refresh() {
+        long startedIn;
+        synchronized (this) {
+            startedIn = generation;
+        }
+        Snapshot fresh;
+        try {
+            fresh = take();
+        } catch (IOException | SQLException e) {
+            System.err.println("Snapshot refresh failed: " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            // invalidate() ran while copying, so the copy may predate the change; its refresh is queued behind
+            if (closed || startedIn != generation) {
+                discard(fresh.shards, fresh.files);
+                return;
+            }
+            if (current != null) {
+                retire(current);
+            }
+            current = fresh;
+        }
+    }
+
+    private Snapshot take() throws IOException, SQLException {
+        Path directory = directory();
+        long takenAt = System.currentTimeMillis();
+        long fileId = FILE_IDS.incrementAndGet();
+        ArrayList<Path> files = new ArrayList<>();
+        ArrayList<Connection> copies = new ArrayList<>();
+        try {
+            // Copy every file first, then open the copies read-only
+            for (int k = 0; k < live.getShardCount(); k++) {
+                Path file = directory.resolve("snapshot-" + fileId + "-" + k + ".db");
+                files.add(file);
+                try (Connection writer = DriverManager.getConnection("jdbc:sqlite:" + file);
+                     Statement stmt = writer.createStatement()) {
+                    // A throwaway copy: no need to survive a crash half-way
+                    stmt.execute("PRAGMA journal_mode = OFF");
+                    stmt.execute("PRAGMA synchronous = OFF");
+                    stmt.executeUpdate("restore from '" + ShardRouter.path(k) + "'");
+                }
+            }
+            SQLiteConfig readOnly = new SQLiteConfig();
+            readOnly.setReadOnly(true);
+            for (int k = 0; k < files.size(); k++) {
+                Connection copy = DriverManager.getConnection("jdbc:sqlite:" + files.get(k), readOnly.toProperties());
+                copies.add(copy);
+                if (k > 0) {
+                    try (Statement stmt = copy.createStatement()) {
+                        stmt.execute("ATTACH DATABASE '" + files.get(0) + "' AS catalog");
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            discard(copies, files);
+            throw e;
+        }
+        return new Snapshot(copies, files, takenAt);
+    }
+
+    private synchronized void release(Snapshot snapshot) {
+        snapshot.readers--;
+        if (snapshot.retired && snapshot.readers == 0) {
+            discard(snapshot.shards, snapshot.files);
+        }
+    }
+
+    private void retire(Snapshot snapshot) {
+        snapshot.retired = true;
+        if (snapshot.readers == 0) {
+            discard(snapshot.shards, snapshot.files);
+        }
+    }
+
+    private static void discard(List<Connection> connections, List<Path> files) {
+        for (Connection connection : connections) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing snapshot: " + e.getMessage());
+            }
+        }
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Error deleting snapshot file: " + e.getMessage());
+            }
+        }
+    }
+}
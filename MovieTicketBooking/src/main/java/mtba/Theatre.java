@@ -0,0 +1,10 @@
+package mtba;
+
+// A catalog theatre; toString() is the combo box text, the ID is what bookings use
+public record Theatre(int id, String name, String location, int totalSeats) {
+
+    @Override
+    public String toString() {
+        return name + " - " + location;
+    }
+}
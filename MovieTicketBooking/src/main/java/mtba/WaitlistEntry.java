@@ -0,0 +1,13 @@
+package mtba;
+
+import java.util.List;
+
+/**
+ * One party on a show's waitlist. orderId is set once the party has been
+ * seated. While the status is OFFERED, offerSeats are held for the party at
+ * offerTotal until offerExpires (epoch ms); otherwise they are empty/null.
+ */
+public record WaitlistEntry(int id, int partySize, String customerName, String phone, String status,
+                            Long orderId, String joinedAt, List<String> offerSeats, Double offerTotal,
+                            Long offerExpires) {
+}
@@ -0,0 +1,253 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BookingExporterTest {
+
+    @TempDir
+    Path dir;
+
+    private Connection conn;
+
+    @BeforeEach
+    void createTables() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("export.db"));
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE movies (id INTEGER PRIMARY KEY, name TEXT)");
+            stmt.execute("CREATE TABLE theatres (id INTEGER PRIMARY KEY, name TEXT)");
+            stmt.execute("CREATE TABLE orders (id INTEGER PRIMARY KEY, customer_name TEXT, phone TEXT)");
+            stmt.execute("CREATE TABLE bookings (id INTEGER PRIMARY KEY, order_id INTEGER, movie_id INTEGER, " +
+                    "theatre_id INTEGER, booking_date TEXT, seat_number TEXT, price REAL, " +
+                    "status TEXT DEFAULT 'BOOKED', booking_time TEXT, cancelled_at TEXT, status_seq INTEGER)");
+            stmt.execute("CREATE TABLE export_watermarks (name TEXT PRIMARY KEY, last_booking_id INTEGER NOT NULL, " +
+                    "last_status_seq INTEGER NOT NULL DEFAULT 0, exported_at TIMESTAMP)");
+            stmt.execute("INSERT INTO movies VALUES (1, 'The Adventure Begins'), (2, 'Love, Actually \"Again\"')");
+            stmt.execute("INSERT INTO theatres VALUES (1, 'PVR Cinemas')");
+        }
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void csvRoundTripsAwkwardValues() throws Exception {
+        String[] names = {"Smith, John", "Say \"hi\"", "Two\nlines", "Carriage\r\nreturn", "Zoë Ünal", ""};
+        for (int i = 0; i < names.length; i++) {
+            addBooking(i + 1, 1 + i % 2, names[i], i == 0 ? null : "98765" + i, i == 1 ? null : 250.5);
+        }
+        Path file = dir.resolve("bookings.csv");
+        BookingExporter.ExportResult result = exporter().export(file, BookingExporter.Format.CSV, null, null, false);
+        assertEquals(names.length, result.rows());
+
+        List<List<String>> rows = parseCsv(Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(names.length + 1, rows.size());
+        assertEquals("booking_id", rows.get(0).get(0));
+        for (int i = 0; i < names.length; i++) {
+            List<String> row = rows.get(i + 1);
+            assertEquals(12, row.size());
+            assertEquals(String.valueOf(i + 1), row.get(0));
+            assertEquals(i % 2 == 0 ? "The Adventure Begins" : "Love, Actually \"Again\"", row.get(2));
+            assertEquals(names[i], row.get(6));
+            // Nulls come out as empty fields
+            assertEquals(i == 0 ? "" : "98765" + i, row.get(7));
+            assertEquals(i == 1 ? "" : "250.50", row.get(8));
+        }
+    }
+
+    @Test
+    void columnarRoundTripsAcrossRowGroups() throws Exception {
+        // More than one 8192-row group, order IDs that go down as well as up, repeated and null strings
+        int count = 9000;
+        conn.setAutoCommit(false);
+        for (int i = 1; i <= count; i++) {
+            addBooking(i, i % 3 == 0 ? 1 : 2, i % 7 == 0 ? "Asha" : "Guest " + i % 50,
+                    i % 11 == 0 ? null : "9876" + i, i % 13 == 0 ? null : i * 0.25);
+        }
+        conn.commit();
+        conn.setAutoCommit(true);
+        Path file = dir.resolve("bookings.mtbc");
+        exporter().export(file, BookingExporter.Format.COLUMNAR, null, null, false);
+
+        List<Object[]> rows = readColumnar(file);
+        assertEquals(count, rows.size());
+        for (int i = 1; i <= count; i++) {
+            Object[] row = rows.get(i - 1);
+            assertEquals((long) i, row[0]);
+            assertEquals((long) orderOf(i), row[1]);
+            assertEquals(i % 3 == 0 ? "The Adventure Begins" : "Love, Actually \"Again\"", row[2]);
+            assertEquals(i % 7 == 0 ? "Asha" : "Guest " + i % 50, row[6]);
+            assertEquals(i % 11 == 0 ? null : "9876" + i, row[7]);
+            if (i % 13 == 0) {
+                assertNull(row[8]);
+            } else {
+                assertEquals(i * 0.25, (Double) row[8]);
+            }
+            assertEquals("BOOKED", row[9]);
+            assertNull(row[11]);
+        }
+    }
+
+    @Test
+    void incrementalExportSendsLaterCancellations() throws Exception {
+        addBooking(1, 1, "Asha", "9876500001", 250.0);
+        addBooking(2, 1, "Ben", "9876500002", 250.0);
+        Path file = dir.resolve("incremental.csv");
+        assertEquals(2, exporter().export(file, BookingExporter.Format.CSV, null, null, true).rows());
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE bookings SET status = 'CANCELLED', cancelled_at = '2026-03-01 10:00:00', " +
+                    "status_seq = 1 WHERE id = 1");
+        }
+        addBooking(3, 1, "Chen", "9876500003", 250.0);
+        BookingExporter.ExportResult second = exporter().export(file, BookingExporter.Format.CSV, null, null, true);
+        assertEquals(2, second.rows());
+        assertEquals(1, second.statusChanges());
+        List<List<String>> rows = parseCsv(Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals("3", rows.get(1).get(0));
+        assertEquals("1", rows.get(2).get(0));
+        assertEquals("CANCELLED", rows.get(2).get(9));
+        assertEquals("2026-03-01 10:00:00", rows.get(2).get(11));
+
+        assertEquals(0, exporter().export(file, BookingExporter.Format.CSV, null, null, true).rows());
+    }
+
+    private BookingExporter exporter() {
+        return new BookingExporter(conn, List.of(conn));
+    }
+
+    // Order IDs zig-zag so the delta encoding sees negative steps
+    private static int orderOf(int bookingId) {
+        return bookingId % 2 == 0 ? bookingId / 2 : 100_000 - bookingId;
+    }
+
+    private void addBooking(int id, int movieId, String name, String phone, Double price) throws SQLException {
+        try (PreparedStatement order = conn.prepareStatement("INSERT INTO orders VALUES (?, ?, ?)");
+             PreparedStatement booking = conn.prepareStatement(
+                     "INSERT INTO bookings (id, order_id, movie_id, theatre_id, booking_date, seat_number, price, " +
+                     "booking_time) VALUES (?, ?, ?, 1, '2026-03-02', ?, ?, '2026-03-01 09:00:00')")) {
+            order.setInt(1, orderOf(id));
+            order.setString(2, name);
+            order.setString(3, phone);
+            order.executeUpdate();
+            booking.setInt(1, id);
+            booking.setInt(2, orderOf(id));
+            booking.setInt(3, movieId);
+            booking.setString(4, "A" + (id % 10 + 1));
+            booking.setObject(5, price);
+            booking.executeUpdate();
+        }
+    }
+
+    // RFC 4180: quoted fields may hold commas, doubled quotes and line breaks
+    private static List<List<String>> parseCsv(String text) {
+        List<List<String>> rows = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                row.add(field.toString());
+                field.setLength(0);
+                rows.add(row);
+                row = new ArrayList<>();
+            } else {
+                field.append(c);
+            }
+        }
+        return rows;
+    }
+
+    // Decodes the MTBC layout described on BookingExporter: L = Long, D = Double, S = String, null kept as null
+    private static List<Object[]> readColumnar(Path file) throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            assertEquals("MTBC", new String(in.readNBytes(4), StandardCharsets.US_ASCII));
+            assertEquals(1, in.readInt());
+            int columns = in.readShort();
+            char[] types = new char[columns];
+            for (int i = 0; i < columns; i++) {
+                in.readUTF();
+                types[i] = (char) in.readByte();
+            }
+            int groupSize;
+            while ((groupSize = in.readInt()) > 0) {
+                Object[][] group = new Object[groupSize][columns];
+                for (int c = 0; c < columns; c++) {
+                    if (types[c] == 'L') {
+                        long previous = 0;
+                        for (int r = 0; r < groupSize; r++) {
+                            long zigzag = readVarLong(in);
+                            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                            group[r][c] = previous;
+                        }
+                    } else if (types[c] == 'D') {
+                        for (int r = 0; r < groupSize; r++) {
+                            double value = in.readDouble();
+                            group[r][c] = Double.isNaN(value) ? null : value;
+                        }
+                    } else {
+                        String[] dictionary = new String[in.readInt()];
+                        for (int d = 0; d < dictionary.length; d++) {
+                            dictionary[d] = in.readUTF();
+                        }
+                        for (int r = 0; r < groupSize; r++) {
+                            int index = (int) readVarLong(in);
+                            group[r][c] = index == 0 ? null : dictionary[index - 1];
+                        }
+                    }
+                }
+                rows.addAll(List.of(group));
+            }
+            assertEquals(rows.size(), in.readLong());
+        }
+        return rows;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A journal stays open and locked until the JVM exits, so a "restart" here
+// opens a copy of the file under a new name, as the next process would see it.
+class BookingJournalTest {
+
+    private static final Movie MOVIE = new Movie(1, "The Adventure Begins", "Action", 150, "PG-13");
+    private static final Theatre THEATRE = new Theatre(2, "PVR Cinemas", "Downtown", 80);
+    private static final ShowTime SHOW = new ShowTime(7, "2026-03-02", "18:30", 1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void pendingAndConflictsSurviveARestart() throws IOException {
+        BookingJournal journal = BookingJournal.open(dir.resolve("live.journal"));
+        BookingJournal.Entry replayed = append(journal, "Asha", "A1");
+        BookingJournal.Entry conflict = append(journal, "Ben", "A2", "A3");
+        append(journal, "Chen", "B1");
+        journal.markReplayed(replayed, 42);
+        journal.markConflict(conflict, "Seats already booked");
+
+        BookingJournal restarted = restart(journal, "restarted.journal", new byte[0]);
+        List<BookingJournal.Entry> pending = restarted.pending();
+        assertEquals(1, pending.size());
+        assertEquals("Chen", pending.get(0).getCustomerName());
+        assertEquals(List.of("B1"), pending.get(0).getSeats());
+        assertArrayEquals(new double[]{250}, pending.get(0).getPrices());
+        assertEquals(7, pending.get(0).getShow().id());
+        assertEquals("18:30", pending.get(0).getShow().time());
+
+        List<BookingJournal.Entry> conflicts = restarted.conflicts();
+        assertEquals(1, conflicts.size());
+        assertEquals(conflict.getSeq(), conflicts.get(0).getSeq());
+        assertEquals("Seats already booked", conflicts.get(0).getConflict());
+
+        // Numbering carries on after the highest recovered entry
+        assertEquals(4, append(restarted, "Dev", "C1").getSeq());
+    }
+
+    @Test
+    void tornLastLineIsCutOff() throws IOException {
+        BookingJournal journal = BookingJournal.open(dir.resolve("torn.journal"));
+        append(journal, "Asha", "A1");
+        long intact = Files.size(journal.getPath());
+
+        byte[] torn = "0badc0de\tB\t2\t1\tThe Adv".getBytes(StandardCharsets.UTF_8);
+        BookingJournal restarted = restart(journal, "torn-restarted.journal", torn);
+        assertEquals(1, restarted.pendingCount());
+        assertEquals(intact, Files.size(restarted.getPath()));
+    }
+
+    @Test
+    void damagedLinesAreSkipped() throws IOException {
+        BookingJournal journal = BookingJournal.open(dir.resolve("damaged.journal"));
+        append(journal, "Asha", "A1");
+        Files.write(journal.getPath(), "00000000\tR\t1\t7\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        append(journal, "Ben", "A2");
+
+        BookingJournal restarted = restart(journal, "damaged-restarted.journal", new byte[0]);
+        // The bad checksum means entry 1 was never marked replayed
+        assertEquals(2, restarted.pendingCount());
+    }
+
+    @Test
+    void tabsAndLineBreaksInCustomerInputAreFlattened() throws IOException {
+        BookingJournal journal = BookingJournal.open(dir.resolve("tabs.journal"));
+        append(journal, "Asha\tB\r\nKumar", "A1");
+
+        BookingJournal.Entry entry = restart(journal, "tabs-restarted.journal", new byte[0]).pending().get(0);
+        assertEquals("Asha B  Kumar", entry.getCustomerName());
+        assertEquals("9876543210", entry.getPhone());
+        assertEquals(List.of("A1"), entry.getSeats());
+    }
+
+    @Test
+    void linesWithoutAShowAreAllDayBookings() throws IOException {
+        BookingJournal journal = BookingJournal.open(dir.resolve("legacy.journal"));
+        String payload = "B\t1\t1\tThe Adventure Begins\t2\tPVR Cinemas\t2026-03-02\tA1\tAsha\t9876543210\t250.0\t0";
+        CRC32 crc = new CRC32();
+        crc.update(payload.getBytes(StandardCharsets.UTF_8));
+        byte[] line = (String.format("%08x\t", crc.getValue()) + payload + "\n").getBytes(StandardCharsets.UTF_8);
+
+        BookingJournal.Entry entry = restart(journal, "legacy-restarted.journal", line).pending().get(0);
+        assertEquals(0, entry.getShow().id());
+        assertEquals("2026-03-02", entry.getShow().date());
+    }
+
+    @Test
+    void settledJournalIsEmptied() throws IOException {
+        BookingJournal journal = BookingJournal.open(dir.resolve("settled.journal"));
+        BookingJournal.Entry entry = append(journal, "Asha", "A1");
+        journal.markConflict(entry, "Seats already booked");
+        assertTrue(Files.size(journal.getPath()) > 0);
+
+        journal.acknowledgeConflicts();
+        assertEquals(0, Files.size(journal.getPath()));
+        assertTrue(journal.conflicts().isEmpty());
+    }
+
+    private static BookingJournal.Entry append(BookingJournal journal, String name, String... seats)
+            throws IOException {
+        double[] prices = new double[seats.length];
+        Arrays.fill(prices, 250);
+        return journal.append(MOVIE, THEATRE, SHOW, new ArrayList<>(List.of(seats)), name,
+                "9876543210", prices);
+    }
+
+    // What the next process finds: the file as written so far, plus whatever a crash left behind
+    private BookingJournal restart(BookingJournal journal, String name, byte[] tail) throws IOException {
+        Path copy = dir.resolve(name);
+        Files.copy(journal.getPath(), copy);
+        Files.write(copy, tail, StandardOpenOption.APPEND);
+        return BookingJournal.open(copy);
+    }
+}
@@ -0,0 +1,127 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CatalogImporterTest {
+
+    @TempDir
+    Path dir;
+
+    private Connection conn;
+
+    @BeforeEach
+    void createTables() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("catalog.db"));
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE movies (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE, " +
+                    "genre TEXT, duration INTEGER, rating TEXT)");
+            stmt.execute("CREATE TABLE theatres (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE, " +
+                    "location TEXT, total_seats INTEGER, screens INTEGER NOT NULL DEFAULT 1)");
+            stmt.execute("CREATE TABLE shows (id INTEGER PRIMARY KEY AUTOINCREMENT, movie_id INTEGER NOT NULL, " +
+                    "theatre_id INTEGER NOT NULL, screen INTEGER NOT NULL DEFAULT 1, show_date TEXT NOT NULL, " +
+                    "show_time TEXT NOT NULL, UNIQUE(theatre_id, screen, show_date, show_time))");
+        }
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        conn.close();
+    }
+
+    private CatalogImporter.ImportReport importCsv(String csv) throws Exception {
+        return new CatalogImporter(conn).importCsv(new StringReader(csv));
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void splitCsvHonoursQuotes() {
+        assertEquals(List.of("movie", "Love, Actually", "Drama \"Rom\"", "120", "PG"),
+                CatalogImporter.splitCsv("movie,\"Love, Actually\",\"Drama \"\"Rom\"\"\",120,PG"));
+        assertEquals(List.of("a", "", "b", ""), CatalogImporter.splitCsv("a,,b,"));
+        assertEquals(List.of("say \"hi\""), CatalogImporter.splitCsv("\"say \"\"hi\"\"\""));
+        assertEquals(List.of(""), CatalogImporter.splitCsv(""));
+        assertNull(CatalogImporter.splitCsv("movie,\"Unclosed, quote"));
+    }
+
+    @Test
+    void blankLinesCommentsAndHeaderAreSkipped() throws Exception {
+        CatalogImporter.ImportReport report = importCsv(String.join("\n",
+                "type,name,genre,duration,rating",
+                "",
+                "# movies",
+                "movie,\"Love, Actually\",Romance,135,PG",
+                "   ",
+                "movie,Untitled,Drama,forever,PG",
+                "show,\"Love, Actually\",Nowhere,2026-03-02,18:00"));
+        assertEquals(3, report.getRowsRead());
+        assertEquals(1, report.getMovies());
+        // Line numbers count the skipped lines too
+        assertEquals(List.of("Line 6: duration 'forever' is not a number", "Line 7: unknown theatre 'Nowhere'"),
+                report.getErrors());
+        assertEquals(1, count("SELECT COUNT(*) FROM movies WHERE name = 'Love, Actually'"));
+    }
+
+    @Test
+    void rejectedRowInABatchIsReportedAndTheRestCommits() throws Exception {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TRIGGER reject_movie BEFORE INSERT ON movies WHEN NEW.name = 'Rejected' " +
+                    "BEGIN SELECT RAISE(ABORT, 'rejected by trigger'); END");
+        }
+        CatalogImporter.ImportReport report = importCsv(String.join("\n",
+                "movie,First,Drama,100,PG",
+                "movie,Rejected,Drama,100,PG",
+                "movie,Third,Drama,100,PG",
+                "theatre,PVR Cinemas,Downtown,80",
+                "show,Third,PVR Cinemas,2026-03-02,18:00",
+                "show,Rejected,PVR Cinemas,2026-03-02,21:00"));
+        assertEquals(2, report.getMovies());
+        assertEquals(1, report.getTheatres());
+        assertEquals(1, report.getShows());
+        assertEquals(2, report.getErrorCount());
+        assertTrue(report.getErrors().get(0).startsWith("Line 2: "), report.getErrors().get(0));
+        assertTrue(report.getErrors().get(0).contains("rejected by trigger"), report.getErrors().get(0));
+        assertEquals("Line 6: unknown movie 'Rejected'", report.getErrors().get(1));
+        assertEquals(2, count("SELECT COUNT(*) FROM movies"));
+        assertEquals(1, count("SELECT COUNT(*) FROM shows"));
+    }
+
+    @Test
+    void theatreScreensAreOptional() throws Exception {
+        CatalogImporter.ImportReport report = importCsv(String.join("\n",
+                "theatre,PVR Cinemas,Downtown,80,4",
+                "theatre,INOX,Mall,80",
+                "theatre,Broken,Mall,80,0"));
+        assertEquals(2, report.getTheatres());
+        assertEquals(List.of("Line 3: screens must be between 1 and 100"), report.getErrors());
+        assertEquals(4, count("SELECT screens FROM theatres WHERE name = 'PVR Cinemas'"));
+        assertEquals(1, count("SELECT screens FROM theatres WHERE name = 'INOX'"));
+
+        // Without the column an existing theatre keeps its screens
+        importCsv("theatre,PVR Cinemas,Uptown,96");
+        assertEquals(4, count("SELECT screens FROM theatres WHERE name = 'PVR Cinemas'"));
+        assertEquals(96, count("SELECT total_seats FROM theatres WHERE name = 'PVR Cinemas'"));
+        importCsv("theatre,PVR Cinemas,Uptown,96,2");
+        assertEquals(2, count("SELECT screens FROM theatres WHERE name = 'PVR Cinemas'"));
+    }
+}
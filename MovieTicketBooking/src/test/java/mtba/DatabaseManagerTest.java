@@ -0,0 +1,104 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DatabaseManagerTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<DatabaseManager> managers = new ArrayList<>();
+
+    @BeforeEach
+    void useTempDatabase() {
+        // Keeps the managers off the movie_booking.db in the working directory
+        System.setProperty("mtba.dataDir", dir.toString());
+        // Sample users are hashed at startup; the full iteration count only slows the test down
+        System.setProperty("mtba.auth.iterations", "1000");
+    }
+
+    @AfterEach
+    void closeManagers() {
+        for (DatabaseManager manager : managers) {
+            manager.closeConnection();
+        }
+        System.clearProperty("mtba.dataDir");
+        System.clearProperty("mtba.auth.iterations");
+    }
+
+    private DatabaseManager open() {
+        DatabaseManager manager = new DatabaseManager();
+        managers.add(manager);
+        return manager;
+    }
+
+    @Test
+    void twoTerminalsBookingTheSameSeatGetOneOrder() throws Exception {
+        DatabaseManager first = open();
+        DatabaseManager second = open();
+        assertTrue(Files.exists(dir.resolve(ShardRouter.CATALOG_FILE)));
+
+        Movie movie = first.getMovies().get(0);
+        Theatre theatre = first.getTheatres().get(0);
+        ShowTime show = first.getShowTimes(movie, theatre, LocalDate.now().plusDays(1).toString()).get(0);
+        // Both terminals have the seat map cached with the seat free, as on screen
+        assertTrue(first.getBookedSeats(movie, theatre, show).isEmpty());
+        assertTrue(second.getBookedSeats(movie, theatre, show).isEmpty());
+
+        BookingMetrics metrics = first.getBookingMetrics();
+        long successes = metrics.getSuccesses();
+        long seatsTaken = metrics.getSeatsTaken();
+        long conflicts = metrics.getVersionConflicts();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService terminals = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (DatabaseManager manager : List.of(first, second)) {
+                results.add(terminals.submit(() -> {
+                    start.await();
+                    return manager.bookTickets(movie, theatre, show, new ArrayList<>(List.of("C5")),
+                            "Asha", "98765 43210", null);
+                }));
+            }
+            start.countDown();
+            int booked = 0;
+            int rejected = 0;
+            for (Future<Integer> result : results) {
+                int orderId = result.get();
+                if (orderId > 0) {
+                    booked++;
+                } else if (orderId == DatabaseManager.SEATS_UNAVAILABLE) {
+                    rejected++;
+                }
+            }
+            assertEquals(1, booked);
+            assertEquals(1, rejected);
+        } finally {
+            terminals.shutdown();
+        }
+
+        assertEquals(successes + 1, metrics.getSuccesses());
+        assertEquals(seatsTaken + 1, metrics.getSeatsTaken());
+        // The loser's cached seat map was out of date, which the version check caught
+        assertTrue(metrics.getVersionConflicts() > conflicts);
+        assertEquals(List.of("C5"), first.getBookedSeats(movie, theatre, show));
+        assertEquals(List.of("C5"), second.getBookedSeats(movie, theatre, show));
+    }
+}
@@ -0,0 +1,77 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IntervalTreeTest {
+
+    @Test
+    void intervalsAreHalfOpen() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.insert(10, 20, "a");
+        assertNull(tree.firstOverlap(0, 10));
+        assertNull(tree.firstOverlap(20, 30));
+        assertEquals("a", tree.firstOverlap(19, 21));
+        assertEquals("a", tree.firstOverlap(0, 11));
+    }
+
+    @Test
+    void firstOverlapIsTheEarliestStart() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        tree.insert(50, 60, "late");
+        tree.insert(30, 100, "long");
+        tree.insert(0, 5, "before");
+        assertEquals("long", tree.firstOverlap(40, 55));
+        assertEquals(List.of("long", "late"), tree.overlapping(40, 55));
+        assertEquals(3, tree.size());
+    }
+
+    @Test
+    void emptyIntervalsAreRejected() {
+        IntervalTree<String> tree = new IntervalTree<>();
+        assertThrows(IllegalArgumentException.class, () -> tree.insert(5, 5, "x"));
+        assertEquals(0, tree.size());
+    }
+
+    @Test
+    void matchesALinearScan() {
+        Random random = new Random(42);
+        IntervalTree<Integer> tree = new IntervalTree<>();
+        ArrayList<long[]> intervals = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long start = random.nextInt(100_000);
+            long end = start + 1 + random.nextInt(500);
+            tree.insert(start, end, i);
+            intervals.add(new long[]{start, end});
+        }
+        for (int q = 0; q < 500; q++) {
+            long start = random.nextInt(100_000);
+            long end = start + 1 + random.nextInt(1000);
+            ArrayList<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < intervals.size(); i++) {
+                if (intervals.get(i)[0] < end && intervals.get(i)[1] > start) {
+                    expected.add(i);
+                }
+            }
+            expected.sort((a, b) -> Long.compare(intervals.get(a)[0], intervals.get(b)[0]));
+            List<Integer> actual = tree.overlapping(start, end);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(intervals.get(expected.get(i))[0], intervals.get(actual.get(i))[0]);
+            }
+            Integer first = tree.firstOverlap(start, end);
+            if (expected.isEmpty()) {
+                assertNull(first);
+            } else {
+                assertEquals(intervals.get(expected.get(0))[0], intervals.get(first)[0]);
+            }
+        }
+    }
+}
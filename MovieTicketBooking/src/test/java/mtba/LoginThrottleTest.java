@@ -0,0 +1,92 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class LoginThrottleTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final LoginThrottle throttle = new LoginThrottle(now::get);
+
+    private void fail(String username, int times) {
+        for (int i = 0; i < times; i++) {
+            throttle.recordFailure(username);
+        }
+    }
+
+    @Test
+    void locksAfterMaxFailuresAndDoublesEachTime() {
+        fail("admin", LoginThrottle.MAX_FAILURES - 1);
+        assertEquals(0, throttle.remainingLockout("admin"));
+        fail("admin", 1);
+        assertEquals(LoginThrottle.BASE_LOCKOUT_MS, throttle.remainingLockout("admin"));
+        // Other spellings are separate accounts
+        assertEquals(0, throttle.remainingLockout("Admin"));
+
+        now.addAndGet(LoginThrottle.BASE_LOCKOUT_MS);
+        assertEquals(0, throttle.remainingLockout("admin"));
+        fail("admin", LoginThrottle.MAX_FAILURES);
+        assertEquals(2 * LoginThrottle.BASE_LOCKOUT_MS, throttle.remainingLockout("admin"));
+
+        throttle.recordSuccess("admin");
+        assertEquals(0, throttle.remainingLockout("admin"));
+    }
+
+    @Test
+    void lockoutIsCapped() {
+        for (int run = 0; run < 12; run++) {
+            fail("admin", LoginThrottle.MAX_FAILURES);
+            assertTrue(throttle.remainingLockout("admin") <= LoginThrottle.MAX_LOCKOUT_MS);
+            now.addAndGet(throttle.remainingLockout("admin"));
+        }
+        fail("admin", LoginThrottle.MAX_FAILURES);
+        assertEquals(LoginThrottle.MAX_LOCKOUT_MS, throttle.remainingLockout("admin"));
+    }
+
+    @Test
+    void quietUsernamesAreForgottenAndSweptOut() {
+        fail("admin", LoginThrottle.MAX_FAILURES);
+        for (int i = 0; i < 100; i++) {
+            fail("guess" + i, 1);
+        }
+        assertEquals(101, throttle.trackedCount());
+
+        // The unlocked guesses go first; the locked username is kept until a while after its lockout
+        now.addAndGet(LoginThrottle.FORGET_AFTER_MS);
+        assertEquals(0, throttle.remainingLockout("admin"));
+        assertEquals(1, throttle.trackedCount());
+        // Next sweep, by when the 30 s lockout is FORGET_AFTER_MS behind too
+        now.addAndGet(LoginThrottle.SWEEP_INTERVAL_MS);
+        assertEquals(0, throttle.remainingLockout("admin"));
+        assertEquals(0, throttle.trackedCount());
+        // Forgotten, so the escalation starts over
+        fail("admin", LoginThrottle.MAX_FAILURES);
+        assertEquals(LoginThrottle.BASE_LOCKOUT_MS, throttle.remainingLockout("admin"));
+    }
+
+    @Test
+    void lockedUsernamesAreKeptUntilTheLockoutEnds() {
+        for (int run = 0; run < 6; run++) {
+            fail("admin", LoginThrottle.MAX_FAILURES);
+        }
+        long remaining = throttle.remainingLockout("admin");
+        now.addAndGet(LoginThrottle.SWEEP_INTERVAL_MS);
+        assertEquals(remaining - LoginThrottle.SWEEP_INTERVAL_MS, throttle.remainingLockout("admin"));
+        assertEquals(1, throttle.trackedCount());
+    }
+
+    @Test
+    void floodOfUsernamesTriggersASweep() {
+        for (int i = 0; i <= LoginThrottle.MAX_TRACKED; i++) {
+            fail("user" + i, 1);
+        }
+        now.addAndGet(LoginThrottle.FORGET_AFTER_MS);
+        // Over the cap, so the next access sweeps even though SWEEP_INTERVAL_MS has not been waited out since
+        fail("one-more", 1);
+        assertEquals(1, throttle.trackedCount());
+    }
+}
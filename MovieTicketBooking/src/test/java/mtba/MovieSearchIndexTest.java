@@ -0,0 +1,63 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MovieSearchIndexTest {
+
+    private static MovieSearchIndex indexOf(String... names) {
+        MovieSearchIndex index = new MovieSearchIndex();
+        for (int i = 0; i < names.length; i++) {
+            index.add(new Movie(i + 1, names[i], "Drama", 120, "PG"));
+        }
+        return index;
+    }
+
+    private static List<String> names(List<Movie> movies) {
+        ArrayList<String> names = new ArrayList<>();
+        for (Movie movie : movies) {
+            names.add(movie.name());
+        }
+        return names;
+    }
+
+    @Test
+    void prefixHitsRankAboveTrigramHits() {
+        MovieSearchIndex index = indexOf("Misadventures", "Love in Paris", "The Adventurers");
+        // "Misadventures" only shares trigrams with the query; "The Adventurers" has a word starting with it
+        assertEquals(List.of("The Adventurers", "Misadventures"), names(index.search("adventur", 10)));
+    }
+
+    @Test
+    void misspeltQueriesStillFindTheTitle() {
+        MovieSearchIndex index = indexOf("The Adventure Begins", "Love in Paris");
+        assertEquals(List.of("The Adventure Begins"), names(index.search("advnture", 10)));
+    }
+
+    @Test
+    void resultsAreCutAtTheLimit() {
+        MovieSearchIndex index = new MovieSearchIndex();
+        for (int i = 30; i >= 1; i--) {
+            index.add(new Movie(i, String.format("Movie %02d", i), "Drama", 120, "PG"));
+        }
+        // Equal scores come back in name order
+        assertEquals(List.of("Movie 01", "Movie 02", "Movie 03", "Movie 04", "Movie 05"),
+                names(index.search("movie", 5)));
+        assertEquals(List.of("Movie 01", "Movie 02", "Movie 03"), names(index.search("", 3)));
+        assertTrue(index.search("movie", 0).isEmpty());
+    }
+
+    @Test
+    void caseAndAccentsAreFolded() {
+        MovieSearchIndex index = indexOf("École des Femmes", "LOVE IN PARIS");
+        assertEquals(List.of("École des Femmes"), names(index.search("ecole", 10)));
+        assertEquals(List.of("École des Femmes"), names(index.search("ÉCOLE", 10)));
+        assertEquals(List.of("LOVE IN PARIS"), names(index.search("love", 10)));
+        assertEquals("ecole des femmes", MovieSearchIndex.normalize("  École-des  FEMMES! "));
+    }
+}
@@ -0,0 +1,44 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class PasswordHasherTest {
+
+    // Few iterations keep the tests fast; the format and checks are the same
+    private final PasswordHasher hasher = new PasswordHasher(1_000);
+
+    @Test
+    void verifiesTheRightPasswordOnly() {
+        String stored = hasher.hash("admin123".toCharArray());
+        assertTrue(PasswordHasher.isHashed(stored));
+        assertTrue(hasher.verify("admin123".toCharArray(), stored));
+        assertFalse(hasher.verify("admin124".toCharArray(), stored));
+        assertFalse(hasher.verify("".toCharArray(), stored));
+        // Salted: the same password never hashes the same way twice
+        assertNotEquals(stored, hasher.hash("admin123".toCharArray()));
+    }
+
+    @Test
+    void malformedOrPlaintextValuesNeverMatch() {
+        char[] password = "admin123".toCharArray();
+        assertFalse(hasher.verify(password, null));
+        assertFalse(hasher.verify(password, "admin123"));
+        assertFalse(hasher.verify(password, "pbkdf2_sha256$1000$not base64!$abc"));
+        assertFalse(hasher.verify(password, "pbkdf2_sha256$many$c2FsdA$aGFzaA"));
+        assertFalse(hasher.verify(password, "md5$1000$c2FsdA$aGFzaA"));
+        assertFalse(PasswordHasher.isHashed("admin123"));
+    }
+
+    @Test
+    void hashesFromAnotherIterationCountVerifyAndAskForRehash() {
+        String older = new PasswordHasher(500).hash("admin123".toCharArray());
+        assertTrue(hasher.verify("admin123".toCharArray(), older));
+        assertTrue(hasher.needsRehash(older));
+        assertTrue(hasher.needsRehash("admin123"));
+        assertFalse(hasher.needsRehash(hasher.hash("admin123".toCharArray())));
+    }
+}
@@ -0,0 +1,89 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class PricingEngineTest {
+
+    private static final SeatLayout HALL = SeatLayout.STANDARD;
+    private static final String MONDAY = "2026-03-02";
+
+    @Test
+    void seatTiersChangeAtTheConfiguredRows() {
+        PricingEngine engine = new PricingEngine();
+        // Rows A-B are front, C-F standard, G-H premium in the 8-row hall
+        assertEquals(200, engine.quote(HALL, "B10", MONDAY, null, 0));
+        assertEquals(250, engine.quote(HALL, "C1", MONDAY, null, 0));
+        assertEquals(250, engine.quote(HALL, "F10", MONDAY, null, 0));
+        assertEquals(325, engine.quote(HALL, "G1", MONDAY, null, 0));
+
+        engine.setRules(PricingRules.fromSettings(Map.of("front_rows", "3", "premium_rows", "0")));
+        assertEquals(200, engine.quote(HALL, "C1", MONDAY, null, 0));
+        assertEquals(250, engine.quote(HALL, "H1", MONDAY, null, 0));
+    }
+
+    @Test
+    void weekendsCostMore() {
+        PricingEngine engine = new PricingEngine();
+        assertEquals(250, engine.quote(HALL, "C1", "2026-02-27", null, 0));
+        assertEquals(300, engine.quote(HALL, "C1", "2026-02-28", null, 0));
+        assertEquals(300, engine.quote(HALL, "C1", "2026-03-01", null, 0));
+        assertEquals(250, engine.quote(HALL, "C1", MONDAY, null, 0));
+        // No usable date, no weekend rate
+        assertEquals(1.0, engine.showDayMultiplier("not a date"));
+    }
+
+    @Test
+    void surgeStartsAtEachThreshold() {
+        PricingEngine engine = new PricingEngine();
+        assertEquals(1.0, engine.surgeMultiplier(0.4999));
+        assertEquals(1.10, engine.surgeMultiplier(0.50));
+        assertEquals(1.10, engine.surgeMultiplier(0.7999));
+        assertEquals(1.25, engine.surgeMultiplier(0.80));
+        assertEquals(1.25, engine.surgeMultiplier(0.9499));
+        assertEquals(1.40, engine.surgeMultiplier(0.95));
+        assertEquals(1.40, engine.surgeMultiplier(1.0));
+        assertEquals(313, engine.quote(HALL, "C1", MONDAY, null, 0.80));
+    }
+
+    @Test
+    void showTimeBandsIncludeTheirStartOnly() {
+        PricingEngine engine = new PricingEngine();
+        assertEquals(0.9, engine.showTimeMultiplier("11:59"));
+        assertEquals(1.0, engine.showTimeMultiplier("12:00"));
+        assertEquals(1.0, engine.showTimeMultiplier("17:59"));
+        assertEquals(1.1, engine.showTimeMultiplier("18:00"));
+        assertEquals(1.1, engine.showTimeMultiplier("23:30"));
+        assertEquals(1.0, engine.showTimeMultiplier(null));
+        assertEquals(275, engine.quote(HALL, "C1", MONDAY, "21:00", 0));
+
+        // A band running past midnight
+        engine.setRules(PricingRules.fromSettings(Map.of("show_times", "22:00-02:00=1.5")));
+        assertEquals(1.5, engine.showTimeMultiplier("22:00"));
+        assertEquals(1.5, engine.showTimeMultiplier("01:59"));
+        assertEquals(1.0, engine.showTimeMultiplier("02:00"));
+        assertEquals(1.0, engine.showTimeMultiplier("21:59"));
+    }
+
+    @Test
+    void settingsRoundTripAndBadValuesAreRejected() {
+        assertEquals(PricingRules.DEFAULTS, PricingRules.fromSettings(PricingRules.DEFAULTS.toSettings()));
+        PricingRules rules = PricingRules.fromSettings(Map.of("surge", "0.9=2, 0.5=1.5", "show_times", ""));
+        // Tiers are kept highest threshold first, whatever order they were entered in
+        assertEquals(0.9, rules.surgeTiers().get(0).occupancy());
+        assertEquals(0, rules.showTimes().size());
+
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.fromSettings(Map.of("surge", "1.5=1.2")));
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.fromSettings(Map.of("surge", "0.5")));
+        assertThrows(IllegalArgumentException.class,
+                () -> PricingRules.fromSettings(Map.of("show_times", "25:00-26:00=1.1")));
+        assertThrows(IllegalArgumentException.class,
+                () -> PricingRules.fromSettings(Map.of("weekend_multiplier", "0")));
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.fromSettings(Map.of("front_rows", "1.5")));
+        assertThrows(IllegalArgumentException.class, () -> PricingRules.fromSettings(Map.of("base_price", "free")));
+    }
+}
@@ -0,0 +1,69 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RetryPolicyTest {
+
+    @Test
+    void jitterSpansZeroToTheDoublingCeiling() {
+        RetryPolicy policy = new RetryPolicy(6, 20, 1000, new Random(42));
+        long[] ceilings = {20, 40, 80, 160, 320, 640, 1000, 1000};
+        for (int attempt = 1; attempt <= ceilings.length; attempt++) {
+            long lowest = Long.MAX_VALUE;
+            long highest = 0;
+            for (int draw = 0; draw < 5000; draw++) {
+                long delay = policy.delayMillis(attempt);
+                assertTrue(delay >= 0 && delay <= ceilings[attempt - 1], "attempt " + attempt + ": " + delay);
+                lowest = Math.min(lowest, delay);
+                highest = Math.max(highest, delay);
+            }
+            // Full jitter: both ends of the range come up
+            assertEquals(0, lowest, "attempt " + attempt);
+            assertEquals(ceilings[attempt - 1], highest, "attempt " + attempt);
+        }
+    }
+
+    @Test
+    void sameSeedSameDelays() {
+        RetryPolicy first = new RetryPolicy(6, 20, 1000, new Random(7));
+        RetryPolicy second = new RetryPolicy(6, 20, 1000, new Random(7));
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            assertEquals(first.delayMillis(attempt), second.delayMillis(attempt));
+        }
+    }
+
+    @Test
+    void ceilingStaysCappedForAnyAttemptCount() {
+        RetryPolicy policy = new RetryPolicy(3, 20, 1000, new Random(1));
+        assertEquals(3, policy.getMaxAttempts());
+        // The shift is capped too, so huge attempt numbers cannot overflow into a negative bound
+        for (int attempt : new int[]{21, 64, 65, Integer.MAX_VALUE}) {
+            long delay = policy.delayMillis(attempt);
+            assertTrue(delay >= 0 && delay <= 1000, "attempt " + attempt + ": " + delay);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(0, 20, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(3, 20, 10));
+    }
+
+    @Test
+    void onlyLockErrorsAreRetried() {
+        RetryPolicy policy = new RetryPolicy();
+        // SQLITE_BUSY, SQLITE_LOCKED and an extended busy code (SQLITE_BUSY_SNAPSHOT)
+        assertTrue(policy.isRetryable(new SQLException("busy", null, 5)));
+        assertTrue(policy.isRetryable(new SQLException("locked", null, 6)));
+        assertTrue(policy.isRetryable(new SQLException("busy snapshot", null, 517)));
+        // SQLITE_CONSTRAINT is a real failure; SQLITE_CANTOPEN means unavailable, not retry
+        assertFalse(policy.isRetryable(new SQLException("constraint", null, 19)));
+        assertFalse(policy.isRetryable(new SQLException("cantopen", null, 14)));
+        assertTrue(policy.isUnavailable(new SQLException("cantopen", null, 14)));
+        assertFalse(policy.isUnavailable(new SQLException("constraint", null, 19)));
+    }
+}
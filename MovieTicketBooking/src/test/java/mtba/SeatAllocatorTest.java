@@ -0,0 +1,74 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SeatAllocatorTest {
+
+    private final SeatLayout layout = SeatLayout.STANDARD;
+    private final SeatAllocator allocator = new SeatAllocator(layout);
+
+    @Test
+    void emptyHallSeatsThePartyTogetherInTheMiddle() {
+        int[] seats = allocator.allocate(new long[layout.getRows()], 2);
+        // Rows D/E and seats 5/6 are the centre of an 8 x 10 hall
+        assertEquals(2, seats.length);
+        assertEquals(seats[0] / 10, seats[1] / 10);
+        assertEquals(1, seats[1] - seats[0]);
+        assertTrue(seats[0] / 10 == 3 || seats[0] / 10 == 4);
+        assertEquals(4, seats[0] % 10);
+    }
+
+    @Test
+    void bookedSeatsAreNeverHandedOut() {
+        long[] booked = new long[layout.getRows()];
+        for (int row = 0; row < booked.length; row++) {
+            booked[row] = 0b0000111100L;
+        }
+        int[] seats = allocator.allocate(booked, 6);
+        assertEquals(6, seats.length);
+        for (int seat : seats) {
+            assertEquals(0, booked[seat / 10] & (1L << (seat % 10)));
+        }
+    }
+
+    @Test
+    void partyIsSplitWhenNoRowHasRoom() {
+        long[] booked = new long[layout.getRows()];
+        for (int row = 0; row < booked.length; row++) {
+            // Only seats 1-3 free in every row
+            booked[row] = ~0b111L & 0x3FFL;
+        }
+        int[] seats = allocator.allocate(booked, 5);
+        assertEquals(5, seats.length);
+        for (int seat : seats) {
+            assertTrue(seat % 10 < 3);
+        }
+    }
+
+    @Test
+    void fullOrUnloadedShowGivesNothing() {
+        long[] booked = new long[layout.getRows()];
+        for (int row = 0; row < booked.length; row++) {
+            booked[row] = 0x3FFL;
+        }
+        booked[0] = 0x3FEL;
+        assertArrayEquals(new int[0], allocator.allocate(booked, 2));
+        assertArrayEquals(new int[]{0}, allocator.allocate(booked, 1));
+        assertArrayEquals(new int[0], allocator.allocate(null, 1));
+        assertArrayEquals(new int[0], allocator.allocate(booked, 0));
+    }
+
+    @Test
+    void shortBackRowOnlyOffersSeatsThatExist() {
+        SeatLayout small = new SeatLayout(2, 4, 6);
+        SeatAllocator smallAllocator = new SeatAllocator(small);
+        long[] booked = {0b1111L, 0L};
+        int[] seats = smallAllocator.allocate(booked, 2);
+        assertArrayEquals(new int[]{4, 5}, seats);
+        assertArrayEquals(new int[0], smallAllocator.allocate(booked, 3));
+    }
+}
@@ -0,0 +1,36 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SeatInventoryTest {
+
+    private static final String SHOW = SeatInventory.showKey(1, 2, "2026-03-02", 7);
+
+    @Test
+    void unknownSeatsAreNeverAvailable() {
+        SeatInventory inventory = new SeatInventory();
+        inventory.load(SHOW, SeatLayout.STANDARD, List.of(), 0);
+        assertTrue(inventory.isAvailable(SHOW, List.of("A1", "H10")));
+        // Row I and seat 11 are past the 8 x 10 hall
+        assertFalse(inventory.isAvailable(SHOW, List.of("A1", "I1")));
+        assertFalse(inventory.isAvailable(SHOW, List.of("A11")));
+        assertFalse(inventory.isAvailable(SHOW, List.of("")));
+    }
+
+    @Test
+    void reserveTakesNothingIfASeatIsUnknownOrTaken() {
+        SeatInventory inventory = new SeatInventory();
+        inventory.load(SHOW, SeatLayout.STANDARD, List.of("B2"), 0);
+        assertFalse(inventory.reserve(SHOW, List.of("A1", "Z9")));
+        assertFalse(inventory.reserve(SHOW, List.of("A1", "B2")));
+        assertEquals(List.of("B2"), inventory.bookedSeats(SHOW));
+        assertTrue(inventory.reserve(SHOW, List.of("A1")));
+        assertFalse(inventory.isAvailable(SHOW, List.of("A1")));
+    }
+}
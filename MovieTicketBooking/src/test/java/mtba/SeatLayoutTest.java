@@ -0,0 +1,56 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SeatLayoutTest {
+
+    @Test
+    void eightySeatsIsTheStandardHall() {
+        SeatLayout layout = SeatLayout.forCapacity(80);
+        assertEquals(8, layout.getRows());
+        assertEquals(10, layout.getCols());
+        assertEquals(80, layout.getCapacity());
+    }
+
+    @Test
+    void unknownSizeFallsBackToStandard() {
+        assertSame(SeatLayout.STANDARD, SeatLayout.forCapacity(0));
+    }
+
+    @Test
+    void capacityIsExactWithAShortBackRow() {
+        for (int seats : new int[]{1, 7, 200, 1000, SeatLayout.MAX_CAPACITY}) {
+            SeatLayout layout = SeatLayout.forCapacity(seats);
+            assertEquals(seats, layout.getCapacity());
+            assertTrue(layout.getRows() <= SeatLayout.MAX_ROWS && layout.getCols() <= SeatLayout.MAX_COLS);
+            int total = 0;
+            for (int row = 0; row < layout.getRows(); row++) {
+                total += layout.getSeatsInRow(row);
+            }
+            assertEquals(seats, total);
+        }
+    }
+
+    @Test
+    void tooManySeatsIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SeatLayout.forCapacity(SeatLayout.MAX_CAPACITY + 1));
+    }
+
+    @Test
+    void labelsRoundTripAndMissingSeatsAreRejected() {
+        SeatLayout layout = new SeatLayout(3, 4, 10);
+        for (int index = 0; index < 10; index++) {
+            assertEquals(index, layout.indexOf(layout.label(index)));
+        }
+        // Back row C has only seats 1 and 2
+        assertEquals(-1, layout.indexOf("C3"));
+        assertEquals(-1, layout.indexOf("D1"));
+        assertEquals(-1, layout.indexOf("A5"));
+        assertEquals(-1, layout.indexOf("A"));
+    }
+}
@@ -0,0 +1,85 @@
+package mtba;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class ShowSchedulerTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+    private final ShowScheduler scheduler = new ShowScheduler(LocalTime.of(10, 0), LocalTime.of(22, 30), 20);
+    private final List<Movie> movies = List.of(
+            new Movie(1, "A", "Drama", 120, "PG"),
+            new Movie(2, "B", "Drama", 90, "PG"),
+            new Movie(3, "C", "Drama", 150, "PG"));
+
+    @Test
+    void screensStayBusyUntilTheLastStart() {
+        ShowScheduler.Result result = scheduler.schedule(movies, Map.of(1, 2), List.of(), Map.of(), DAY, 1);
+        HashMap<Integer, Integer> perScreen = new HashMap<>();
+        HashSet<Integer> moviesOnScreenOne = new HashSet<>();
+        for (ShowScheduler.Show show : result.created()) {
+            perScreen.merge(show.screen(), 1, Integer::sum);
+            if (show.screen() == 1) {
+                assertTrue(show.time().isBefore(LocalTime.of(22, 35)), show.toString());
+                moviesOnScreenOne.add(show.movieId());
+            }
+        }
+        // 10:00 to 22:30 fits five or six shows per screen, so movies repeat within the day
+        assertTrue(perScreen.get(1) >= 5, perScreen.toString());
+        assertTrue(perScreen.get(2) >= 5, perScreen.toString());
+        assertEquals(3, moviesOnScreenOne.size());
+    }
+
+    @Test
+    void newShowsWorkAroundExistingOnes() {
+        List<ShowScheduler.Show> existing = List.of(new ShowScheduler.Show(2, 1, 1, DAY, LocalTime.of(12, 0)));
+        ShowScheduler.Result result = scheduler.schedule(movies, Map.of(1, 1), existing, Map.of(2, 90), DAY, 1);
+        // Screen 1 is busy 12:00 to 13:50
+        for (ShowScheduler.Show show : result.created()) {
+            int start = show.time().getHour() * 60 + show.time().getMinute();
+            int end = start + movies.get(show.movieId() - 1).duration() + 20;
+            assertTrue(end <= 12 * 60 || start >= 13 * 60 + 50, show.toString());
+        }
+        assertTrue(result.conflicts().isEmpty());
+    }
+
+    @Test
+    void runningAgainAddsNothing() {
+        ShowScheduler.Result first = scheduler.schedule(movies, Map.of(1, 2), List.of(), Map.of(), DAY, 5);
+        ShowScheduler.Result second = scheduler.schedule(movies, Map.of(1, 2), first.created(),
+                Map.of(1, 120, 2, 90, 3, 150), DAY, 5);
+        assertTrue(second.created().isEmpty());
+        assertTrue(second.conflicts().isEmpty());
+    }
+
+    @Test
+    void newShowsWorkAroundLateShowsFromTheDayBefore() {
+        // 23:30 + 150 min + gap keeps screen 1 busy until 02:20
+        ShowScheduler.Show late = new ShowScheduler.Show(3, 1, 1, DAY.minusDays(1), LocalTime.of(23, 30));
+        ShowScheduler scheduler = new ShowScheduler(LocalTime.of(0, 0), LocalTime.of(22, 30), 20);
+        ShowScheduler.Result result = scheduler.schedule(movies, Map.of(1, 1), List.of(late),
+                Map.of(3, 150), DAY, 1);
+        assertEquals(LocalTime.of(2, 20), result.created().get(0).time());
+    }
+
+    @Test
+    void overlappingExistingShowsAreReported() {
+        List<ShowScheduler.Show> existing = new ArrayList<>();
+        existing.add(new ShowScheduler.Show(1, 1, 1, DAY, LocalTime.of(12, 0)));
+        existing.add(new ShowScheduler.Show(2, 1, 1, DAY, LocalTime.of(13, 0)));
+        ShowScheduler.Result result = scheduler.schedule(movies, Map.of(1, 1), existing, Map.of(1, 120, 2, 90), DAY, 1);
+        assertEquals(1, result.conflicts().size());
+        assertEquals(existing.get(1), result.conflicts().get(0).show());
+    }
+}